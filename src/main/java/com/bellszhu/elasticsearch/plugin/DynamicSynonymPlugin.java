@@ -2,28 +2,214 @@ package com.bellszhu.elasticsearch.plugin;
 
 import static org.elasticsearch.plugins.AnalysisPlugin.requiresAnalysisSettings;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.client.internal.Client;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.routing.allocation.AllocationService;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.IndexScopedSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.env.NodeEnvironment;
+import org.elasticsearch.index.IndexModule;
+import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.analysis.TokenFilterFactory;
+import org.elasticsearch.index.shard.IndexEventListener;
+import org.elasticsearch.indices.SystemIndexDescriptor;
+import org.elasticsearch.indices.breaker.BreakerSettings;
 import org.elasticsearch.indices.analysis.AnalysisModule.AnalysisProvider;
+import org.elasticsearch.indices.cluster.IndicesClusterStateService.AllocatedIndices.IndexRemovalReason;
 import org.elasticsearch.plugins.AnalysisPlugin;
+import org.elasticsearch.plugins.CircuitBreakerPlugin;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.plugins.SystemIndexPlugin;
+import org.elasticsearch.repositories.RepositoriesService;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestHandler;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.tracing.Tracer;
+import org.elasticsearch.watcher.ResourceWatcherService;
+import org.elasticsearch.xcontent.NamedXContentRegistry;
 
+import com.bellszhu.elasticsearch.plugin.synonym.action.PullSynonymAction;
+import com.bellszhu.elasticsearch.plugin.synonym.action.PushSynonymAction;
+import com.bellszhu.elasticsearch.plugin.synonym.action.ReloadSynonymAnalyzersAction;
+import com.bellszhu.elasticsearch.plugin.synonym.action.SynonymStatsAction;
+import com.bellszhu.elasticsearch.plugin.synonym.action.TransportPullSynonymAction;
+import com.bellszhu.elasticsearch.plugin.synonym.action.TransportPushSynonymAction;
+import com.bellszhu.elasticsearch.plugin.synonym.action.TransportReloadSynonymAnalyzersAction;
+import com.bellszhu.elasticsearch.plugin.synonym.action.TransportSynonymStatsAction;
 import com.bellszhu.elasticsearch.plugin.synonym.analysis.DynamicSynonymGraphTokenFilterFactory;
 import com.bellszhu.elasticsearch.plugin.synonym.analysis.DynamicSynonymTokenFilterFactory;
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymIndex;
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymMemory;
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymPoller;
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymRegistry;
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymWarmer;
+import com.bellszhu.elasticsearch.plugin.synonym.rest.RestReloadSynonymAnalyzersAction;
+import com.bellszhu.elasticsearch.plugin.synonym.rest.RestSynonymStatsAction;
 
 
 /**
  * @author bellszhu
  */
-public class DynamicSynonymPlugin extends Plugin implements AnalysisPlugin {
+public class DynamicSynonymPlugin extends Plugin implements AnalysisPlugin, SystemIndexPlugin, CircuitBreakerPlugin {
+
+    /**
+     * Synonym factories, coordinator and synonym index of this node
+     */
+    private final SynonymRegistry registry = new SynonymRegistry();
+
+    /**
+     * Number of threads polling the synonym sources of the node
+     */
+    public static final Setting<Integer> MONITOR_THREADS_SETTING =
+            Setting.intSetting("dynamic_synonym.monitor.threads", 1, 1, Setting.Property.NodeScope);
+
+    /**
+     * Poll every synonym source on its own virtual thread, opt-in as it requires JDK 21,
+     * the monitor threads are used on older JDKs
+     */
+    public static final Setting<Boolean> VIRTUAL_THREADS_SETTING =
+            Setting.boolSetting("dynamic_synonym.monitor.virtual_threads", false, Setting.Property.NodeScope);
+
+    /**
+     * Number of synonym sources polled at once on virtual threads
+     */
+    public static final Setting<Integer> MAX_CONCURRENT_POLLS_SETTING =
+            Setting.intSetting("dynamic_synonym.monitor.max_concurrent_polls", 64, 1, Setting.Property.NodeScope);
+
+    /**
+     * Number of threads building the synonym maps of the filters with warmup enabled
+     */
+    public static final Setting<Integer> WARMUP_THREADS_SETTING =
+            Setting.intSetting("dynamic_synonym.warmup.threads", 2, 1, Setting.Property.NodeScope);
+
+    public DynamicSynonymPlugin(Settings settings) {
+        DynamicSynonymTokenFilterFactory.setMonitorThreads(MONITOR_THREADS_SETTING.get(settings));
+        SynonymPoller.setMaxConcurrentPolls(MAX_CONCURRENT_POLLS_SETTING.get(settings));
+        SynonymPoller.setVirtualThreads(VIRTUAL_THREADS_SETTING.get(settings));
+        SynonymWarmer.setThreads(WARMUP_THREADS_SETTING.get(settings));
+    }
+
+    @Override
+    public List<Setting<?>> getSettings() {
+        return List.of(
+                MONITOR_THREADS_SETTING,
+                VIRTUAL_THREADS_SETTING,
+                MAX_CONCURRENT_POLLS_SETTING,
+                WARMUP_THREADS_SETTING,
+                SynonymMemory.LIMIT_SETTING,
+                SynonymMemory.OVERHEAD_SETTING
+        );
+    }
+
+    @Override
+    public BreakerSettings getCircuitBreaker(Settings settings) {
+        return new BreakerSettings(
+                SynonymMemory.BREAKER_NAME,
+                SynonymMemory.LIMIT_SETTING.get(settings).getBytes(),
+                SynonymMemory.OVERHEAD_SETTING.get(settings),
+                CircuitBreaker.Type.MEMORY,
+                CircuitBreaker.Durability.PERMANENT
+        );
+    }
+
+    @Override
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        SynonymMemory.setBreaker(circuitBreaker);
+    }
+
+    @Override
+    public Collection<Object> createComponents(
+            Client client,
+            ClusterService clusterService,
+            ThreadPool threadPool,
+            ResourceWatcherService resourceWatcherService,
+            ScriptService scriptService,
+            NamedXContentRegistry xContentRegistry,
+            Environment environment,
+            NodeEnvironment nodeEnvironment,
+            NamedWriteableRegistry namedWriteableRegistry,
+            IndexNameExpressionResolver indexNameExpressionResolver,
+            Supplier<RepositoriesService> repositoriesServiceSupplier,
+            Tracer tracer,
+            AllocationService allocationService
+    ) {
+        registry.getCoordinator().init(client, clusterService);
+        registry.getSynonymIndex().init(client);
+        return List.of(registry);
+    }
+
+    @Override
+    public void onIndexModule(IndexModule indexModule) {
+        registry.getSynonymIndex().onIndexModule(indexModule);
+        indexModule.addIndexEventListener(new IndexEventListener() {
+            @Override
+            public void beforeIndexRemoved(IndexService indexService, IndexRemovalReason reason) {
+                // closed or deleted indices stop polling their synonym sources
+                registry.release(indexService.getIndexAnalyzers());
+            }
+        });
+    }
+
+    @Override
+    public Collection<SystemIndexDescriptor> getSystemIndexDescriptors(Settings settings) {
+        return List.of(SynonymIndex.descriptor());
+    }
+
+    @Override
+    public String getFeatureName() {
+        return "dynamic_synonym";
+    }
+
+    @Override
+    public String getFeatureDescription() {
+        return "Stores synonym rules for the dynamic synonym filters";
+    }
 
     @Override
     public Map<String, AnalysisProvider<TokenFilterFactory>> getTokenFilters() {
         Map<String, AnalysisProvider<TokenFilterFactory>> extra = new HashMap<>();
-        extra.put("dynamic_synonym", requiresAnalysisSettings((indexSettings, env, name, settings) -> new DynamicSynonymTokenFilterFactory(env, name, settings)));
-        extra.put("dynamic_synonym_graph", requiresAnalysisSettings((indexSettings, env, name, settings) -> new DynamicSynonymGraphTokenFilterFactory(env, name, settings)));
+        extra.put("dynamic_synonym", requiresAnalysisSettings((indexSettings, env, name, settings) -> new DynamicSynonymTokenFilterFactory(indexSettings, env, name, settings, registry)));
+        extra.put("dynamic_synonym_graph", requiresAnalysisSettings((indexSettings, env, name, settings) -> new DynamicSynonymGraphTokenFilterFactory(indexSettings, env, name, settings, registry)));
         return extra;
     }
+
+    @Override
+    public List<ActionHandler<? extends ActionRequest, ? extends ActionResponse>> getActions() {
+        return List.of(
+                new ActionHandler<>(PushSynonymAction.INSTANCE, TransportPushSynonymAction.class),
+                new ActionHandler<>(PullSynonymAction.INSTANCE, TransportPullSynonymAction.class),
+                new ActionHandler<>(SynonymStatsAction.INSTANCE, TransportSynonymStatsAction.class),
+                new ActionHandler<>(ReloadSynonymAnalyzersAction.INSTANCE, TransportReloadSynonymAnalyzersAction.class)
+        );
+    }
+
+    @Override
+    public List<RestHandler> getRestHandlers(
+            Settings settings,
+            RestController restController,
+            ClusterSettings clusterSettings,
+            IndexScopedSettings indexScopedSettings,
+            SettingsFilter settingsFilter,
+            IndexNameExpressionResolver indexNameExpressionResolver,
+            Supplier<DiscoveryNodes> nodesInCluster
+    ) {
+        return List.of(new RestSynonymStatsAction(), new RestReloadSynonymAnalyzersAction());
+    }
 }
\ No newline at end of file
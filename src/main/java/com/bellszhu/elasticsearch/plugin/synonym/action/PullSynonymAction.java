@@ -0,0 +1,149 @@
+package com.bellszhu.elasticsearch.plugin.synonym.action;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.elasticsearch.action.ActionType;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.transport.TransportRequest;
+
+/**
+ * Asks the designated node for the current rules of a coordinated filter, so
+ * that a node which missed a push catches up. The rules are only sent back if
+ * their hash differs from the one of the asking node.
+ *
+ * @author bellszhu
+ */
+public class PullSynonymAction extends ActionType<PullSynonymAction.Response> {
+
+    public static final PullSynonymAction INSTANCE = new PullSynonymAction();
+    public static final String NAME = "internal:cluster/dynamic_synonym/pull";
+
+    private PullSynonymAction() {
+        super(NAME, Response::new);
+    }
+
+    public static class Request extends BaseNodesRequest<Request> {
+
+        private final String id;
+        private final String hash;
+
+        public Request(String id, String hash, String nodeId) {
+            super(nodeId);
+            this.id = id;
+            this.hash = hash;
+        }
+
+        public Request(StreamInput in) throws IOException {
+            super(in);
+            this.id = in.readString();
+            this.hash = in.readOptionalString();
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the hash of the rules of the asking node, null if it has none.
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeString(id);
+            out.writeOptionalString(hash);
+        }
+    }
+
+    public static class NodeRequest extends TransportRequest {
+
+        private final String id;
+        private final String hash;
+
+        NodeRequest(Request request) {
+            this.id = request.getId();
+            this.hash = request.getHash();
+        }
+
+        public NodeRequest(StreamInput in) throws IOException {
+            super(in);
+            this.id = in.readString();
+            this.hash = in.readOptionalString();
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeString(id);
+            out.writeOptionalString(hash);
+        }
+    }
+
+    public static class NodeResponse extends BaseNodeResponse {
+
+        private final String rules;
+
+        NodeResponse(DiscoveryNode node, String rules) {
+            super(node);
+            this.rules = rules;
+        }
+
+        public NodeResponse(StreamInput in) throws IOException {
+            super(in);
+            this.rules = in.readOptionalString();
+        }
+
+        /**
+         * @return the current rules, null if they are the same as the asking node's or unknown.
+         */
+        public String getRules() {
+            return rules;
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeOptionalString(rules);
+        }
+    }
+
+    public static class Response extends BaseNodesResponse<NodeResponse> {
+
+        public Response(ClusterName clusterName, List<NodeResponse> nodes, List<FailedNodeException> failures) {
+            super(clusterName, nodes, failures);
+        }
+
+        public Response(StreamInput in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected List<NodeResponse> readNodesFrom(StreamInput in) throws IOException {
+            return in.readList(NodeResponse::new);
+        }
+
+        @Override
+        protected void writeNodesTo(StreamOutput out, List<NodeResponse> nodes) throws IOException {
+            out.writeList(nodes);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.bellszhu.elasticsearch.plugin.synonym.action;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.elasticsearch.action.ActionType;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.transport.TransportRequest;
+
+/**
+ * Distributes the rules fetched by the designated node to every node of the cluster.
+ *
+ * @author bellszhu
+ */
+public class PushSynonymAction extends ActionType<PushSynonymAction.Response> {
+
+    public static final PushSynonymAction INSTANCE = new PushSynonymAction();
+    public static final String NAME = "internal:cluster/dynamic_synonym/push";
+
+    private PushSynonymAction() {
+        super(NAME, Response::new);
+    }
+
+    public static class Request extends BaseNodesRequest<Request> {
+
+        private final String id;
+        private final String rules;
+
+        public Request(String id, String rules) {
+            super();
+            this.id = id;
+            this.rules = rules;
+        }
+
+        public Request(StreamInput in) throws IOException {
+            super(in);
+            this.id = in.readString();
+            this.rules = in.readString();
+        }
+
+        /**
+         * @return the id of the coordinated filter, see {@link SynonymCoordinator#id}.
+         */
+        public String getId() {
+            return id;
+        }
+
+        public String getRules() {
+            return rules;
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeString(id);
+            out.writeString(rules);
+        }
+    }
+
+    public static class NodeRequest extends TransportRequest {
+
+        private final String id;
+        private final String rules;
+
+        NodeRequest(Request request) {
+            this.id = request.getId();
+            this.rules = request.getRules();
+        }
+
+        public NodeRequest(StreamInput in) throws IOException {
+            super(in);
+            this.id = in.readString();
+            this.rules = in.readString();
+        }
+
+        /**
+         * @return the id of the coordinated filter, see {@link SynonymCoordinator#id}.
+         */
+        public String getId() {
+            return id;
+        }
+
+        public String getRules() {
+            return rules;
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeString(id);
+            out.writeString(rules);
+        }
+    }
+
+    public static class NodeResponse extends BaseNodeResponse {
+
+        private final int applied;
+
+        NodeResponse(DiscoveryNode node, int applied) {
+            super(node);
+            this.applied = applied;
+        }
+
+        public NodeResponse(StreamInput in) throws IOException {
+            super(in);
+            this.applied = in.readVInt();
+        }
+
+        /**
+         * @return the number of filters on this node that rebuilt their synonym map.
+         */
+        public int getApplied() {
+            return applied;
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeVInt(applied);
+        }
+    }
+
+    public static class Response extends BaseNodesResponse<NodeResponse> {
+
+        public Response(ClusterName clusterName, List<NodeResponse> nodes, List<FailedNodeException> failures) {
+            super(clusterName, nodes, failures);
+        }
+
+        public Response(StreamInput in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected List<NodeResponse> readNodesFrom(StreamInput in) throws IOException {
+            return in.readList(NodeResponse::new);
+        }
+
+        @Override
+        protected void writeNodesTo(StreamOutput out, List<NodeResponse> nodes) throws IOException {
+            out.writeList(nodes);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.bellszhu.elasticsearch.plugin.synonym.action;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.action.ActionType;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.IndicesRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.xcontent.ToXContentFragment;
+import org.elasticsearch.xcontent.XContentBuilder;
+
+/**
+ * Rebuilds the search time analyzers of the matching indices on every node,
+ * which reads the synonyms of their updateable filters again.
+ *
+ * @author bellszhu
+ */
+public class ReloadSynonymAnalyzersAction extends ActionType<ReloadSynonymAnalyzersAction.Response> {
+
+    public static final ReloadSynonymAnalyzersAction INSTANCE = new ReloadSynonymAnalyzersAction();
+    public static final String NAME = "cluster:admin/dynamic_synonym/reload";
+
+    private ReloadSynonymAnalyzersAction() {
+        super(NAME, Response::new);
+    }
+
+    public static class Request extends BaseNodesRequest<Request> implements IndicesRequest.Replaceable {
+
+        /**
+         * Index expressions, all indices if empty, replaced by the concrete indices before the nodes are called
+         */
+        private String[] indices;
+        private IndicesOptions indicesOptions = IndicesOptions.strictExpandOpenAndForbidClosed();
+
+        public Request(String... indices) {
+            super(Strings.EMPTY_ARRAY);
+            this.indices = indices;
+        }
+
+        public Request(StreamInput in) throws IOException {
+            super(in);
+            this.indices = in.readStringArray();
+            this.indicesOptions = IndicesOptions.readIndicesOptions(in);
+        }
+
+        @Override
+        public String[] indices() {
+            return indices;
+        }
+
+        @Override
+        public Request indices(String... indices) {
+            this.indices = indices;
+            return this;
+        }
+
+        @Override
+        public IndicesOptions indicesOptions() {
+            return indicesOptions;
+        }
+
+        public Request indicesOptions(IndicesOptions indicesOptions) {
+            this.indicesOptions = indicesOptions;
+            return this;
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeStringArray(indices);
+            indicesOptions.writeIndicesOptions(out);
+        }
+    }
+
+    public static class NodeRequest extends TransportRequest {
+
+        /**
+         * Concrete indices
+         */
+        private final String[] indices;
+
+        NodeRequest(String[] indices) {
+            this.indices = indices;
+        }
+
+        public NodeRequest(StreamInput in) throws IOException {
+            super(in);
+            this.indices = in.readStringArray();
+        }
+
+        String[] getIndices() {
+            return indices;
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeStringArray(indices);
+        }
+    }
+
+    public static class NodeResponse extends BaseNodeResponse {
+
+        /**
+         * Reloaded analyzers per index
+         */
+        private final Map<String, List<String>> analyzers;
+
+        NodeResponse(DiscoveryNode node, Map<String, List<String>> analyzers) {
+            super(node);
+            this.analyzers = analyzers;
+        }
+
+        public NodeResponse(StreamInput in) throws IOException {
+            super(in);
+            this.analyzers = in.readMap(StreamInput::readString, StreamInput::readStringList);
+        }
+
+        public Map<String, List<String>> getAnalyzers() {
+            return analyzers;
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeMap(analyzers, StreamOutput::writeString, StreamOutput::writeStringCollection);
+        }
+    }
+
+    public static class Response extends BaseNodesResponse<NodeResponse> implements ToXContentFragment {
+
+        public Response(ClusterName clusterName, List<NodeResponse> nodes, List<FailedNodeException> failures) {
+            super(clusterName, nodes, failures);
+        }
+
+        public Response(StreamInput in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected List<NodeResponse> readNodesFrom(StreamInput in) throws IOException {
+            return in.readList(NodeResponse::new);
+        }
+
+        @Override
+        protected void writeNodesTo(StreamOutput out, List<NodeResponse> nodes) throws IOException {
+            out.writeList(nodes);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject("nodes");
+            for (NodeResponse node : getNodes()) {
+                builder.startObject(node.getNode().getId());
+                builder.field("name", node.getNode().getName());
+                builder.startObject("indices");
+                for (Map.Entry<String, List<String>> index : node.getAnalyzers().entrySet()) {
+                    builder.field(index.getKey(), index.getValue());
+                }
+                builder.endObject();
+                builder.endObject();
+            }
+            return builder.endObject();
+        }
+    }
+}
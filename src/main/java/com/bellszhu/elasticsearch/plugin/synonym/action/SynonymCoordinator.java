@@ -0,0 +1,117 @@
+package com.bellszhu.elasticsearch.plugin.synonym.action;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.internal.Client;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.routing.IndexRoutingTable;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.index.Index;
+
+/**
+ * Decides which node fetches a coordinated synonym source and distributes the
+ * fetched rules to the rest of the cluster. The other nodes push nothing but
+ * pull the rules of the designated node when they start and whenever their
+ * version differs, so that a missed push is caught up.
+ *
+ * @author bellszhu
+ */
+public final class SynonymCoordinator {
+
+    private static final Logger logger = LogManager.getLogger("dynamic-synonym");
+
+    private static final TimeValue PULL_TIMEOUT = TimeValue.timeValueSeconds(30);
+
+    private volatile Client client;
+    private volatile ClusterService clusterService;
+
+    public void init(Client client, ClusterService clusterService) {
+        this.client = client;
+        this.clusterService = clusterService;
+    }
+
+    /**
+     * @return the id of a coordinated filter, the same on every node: the uuid of
+     * its index and the name of the filter.
+     */
+    public static String id(Index index, String filter) {
+        return index.getUUID() + "/" + filter;
+    }
+
+    /**
+     * The node holding the primary of the first shard fetches on behalf of the
+     * cluster. Until the shard is assigned the elected master takes over, and
+     * without cluster services (e.g. tests) every node fetches for itself.
+     */
+    public boolean isDesignatedNode(Index index) {
+        ClusterService service = clusterService;
+        if (service == null || index == null) {
+            return true;
+        }
+        return service.state().nodes().getLocalNodeId().equals(designatedNodeId(service.state(), index));
+    }
+
+    private static String designatedNodeId(ClusterState state, Index index) {
+        IndexRoutingTable routingTable = state.routingTable().index(index);
+        ShardRouting primary = routingTable == null ? null : routingTable.shard(0).primaryShard();
+        if (primary == null || !primary.assignedToNode()) {
+            return state.nodes().getMasterNodeId();
+        }
+        return primary.currentNodeId();
+    }
+
+    public void push(String id, String rules) {
+        Client nodeClient = client;
+        if (nodeClient == null) {
+            return;
+        }
+        ThreadContext threadContext = nodeClient.threadPool().getThreadContext();
+        try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
+            threadContext.markAsSystemContext();
+            nodeClient.execute(PushSynonymAction.INSTANCE, new PushSynonymAction.Request(id, rules),
+                    ActionListener.wrap(
+                            response -> logger.info("pushed synonym rules of {} to {} nodes, {} failed",
+                                    id, response.getNodes().size(), response.failures().size()),
+                            e -> logger.error("failed to push synonym rules of {}", id, e)
+                    ));
+        }
+    }
+
+    /**
+     * Ask the designated node for its rules without blocking the caller, the
+     * listener is called with null if the rules have the given hash, are not
+     * known yet, or this node is the designated one.
+     *
+     * @param hash the hash of the local rules, null if there are none.
+     */
+    public void pull(Index index, String id, String hash, ActionListener<String> listener) {
+        Client nodeClient = client;
+        ClusterService service = clusterService;
+        if (nodeClient == null || service == null) {
+            listener.onResponse(null);
+            return;
+        }
+        String nodeId = designatedNodeId(service.state(), index);
+        if (nodeId == null || nodeId.equals(service.state().nodes().getLocalNodeId())) {
+            listener.onResponse(null);
+            return;
+        }
+        ThreadContext threadContext = nodeClient.threadPool().getThreadContext();
+        try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
+            threadContext.markAsSystemContext();
+            PullSynonymAction.Request request = new PullSynonymAction.Request(id, hash, nodeId);
+            request.timeout(PULL_TIMEOUT);
+            nodeClient.execute(PullSynonymAction.INSTANCE, request, ActionListener.wrap(response -> {
+                if (!response.failures().isEmpty()) {
+                    listener.onFailure(response.failures().get(0));
+                } else {
+                    listener.onResponse(response.getNodes().isEmpty() ? null : response.getNodes().get(0).getRules());
+                }
+            }, listener::onFailure));
+        }
+    }
+}
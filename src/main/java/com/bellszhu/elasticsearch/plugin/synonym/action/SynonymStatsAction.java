@@ -0,0 +1,117 @@
+package com.bellszhu.elasticsearch.plugin.synonym.action;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.elasticsearch.action.ActionType;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.xcontent.ToXContentFragment;
+import org.elasticsearch.xcontent.XContentBuilder;
+
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymStats;
+
+/**
+ * Collects the state of the dynamic synonym filters of every node.
+ *
+ * @author bellszhu
+ */
+public class SynonymStatsAction extends ActionType<SynonymStatsAction.Response> {
+
+    public static final SynonymStatsAction INSTANCE = new SynonymStatsAction();
+    public static final String NAME = "cluster:monitor/dynamic_synonym/stats";
+
+    private SynonymStatsAction() {
+        super(NAME, Response::new);
+    }
+
+    public static class Request extends BaseNodesRequest<Request> {
+
+        public Request(String... nodesIds) {
+            super(nodesIds);
+        }
+
+        public Request(StreamInput in) throws IOException {
+            super(in);
+        }
+    }
+
+    public static class NodeRequest extends TransportRequest {
+
+        NodeRequest() {
+        }
+
+        public NodeRequest(StreamInput in) throws IOException {
+            super(in);
+        }
+    }
+
+    public static class NodeResponse extends BaseNodeResponse {
+
+        private final List<SynonymStats> filters;
+
+        NodeResponse(DiscoveryNode node, List<SynonymStats> filters) {
+            super(node);
+            this.filters = filters;
+        }
+
+        public NodeResponse(StreamInput in) throws IOException {
+            super(in);
+            this.filters = in.readList(SynonymStats::new);
+        }
+
+        public List<SynonymStats> getFilters() {
+            return filters;
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeList(filters);
+        }
+    }
+
+    public static class Response extends BaseNodesResponse<NodeResponse> implements ToXContentFragment {
+
+        public Response(ClusterName clusterName, List<NodeResponse> nodes, List<FailedNodeException> failures) {
+            super(clusterName, nodes, failures);
+        }
+
+        public Response(StreamInput in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected List<NodeResponse> readNodesFrom(StreamInput in) throws IOException {
+            return in.readList(NodeResponse::new);
+        }
+
+        @Override
+        protected void writeNodesTo(StreamOutput out, List<NodeResponse> nodes) throws IOException {
+            out.writeList(nodes);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject("nodes");
+            for (NodeResponse node : getNodes()) {
+                builder.startObject(node.getNode().getId());
+                builder.field("name", node.getNode().getName());
+                builder.startArray("filters");
+                for (SynonymStats filter : node.getFilters()) {
+                    filter.toXContent(builder, params);
+                }
+                builder.endArray();
+                builder.endObject();
+            }
+            return builder.endObject();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.bellszhu.elasticsearch.plugin.synonym.action;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymRegistry;
+
+/**
+ * @author bellszhu
+ */
+public class TransportPullSynonymAction extends TransportNodesAction<
+        PullSynonymAction.Request,
+        PullSynonymAction.Response,
+        PullSynonymAction.NodeRequest,
+        PullSynonymAction.NodeResponse> {
+
+    private final SynonymRegistry registry;
+
+    @Inject
+    public TransportPullSynonymAction(
+            ThreadPool threadPool,
+            ClusterService clusterService,
+            TransportService transportService,
+            ActionFilters actionFilters,
+            SynonymRegistry registry
+    ) {
+        super(
+                PullSynonymAction.NAME,
+                threadPool,
+                clusterService,
+                transportService,
+                actionFilters,
+                PullSynonymAction.Request::new,
+                PullSynonymAction.NodeRequest::new,
+                ThreadPool.Names.GENERIC,
+                PullSynonymAction.NodeResponse.class
+        );
+        this.registry = registry;
+    }
+
+    @Override
+    protected PullSynonymAction.Response newResponse(
+            PullSynonymAction.Request request,
+            List<PullSynonymAction.NodeResponse> responses,
+            List<FailedNodeException> failures
+    ) {
+        return new PullSynonymAction.Response(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected PullSynonymAction.NodeRequest newNodeRequest(PullSynonymAction.Request request) {
+        return new PullSynonymAction.NodeRequest(request);
+    }
+
+    @Override
+    protected PullSynonymAction.NodeResponse newNodeResponse(StreamInput in, DiscoveryNode node) throws IOException {
+        return new PullSynonymAction.NodeResponse(in);
+    }
+
+    @Override
+    protected PullSynonymAction.NodeResponse nodeOperation(PullSynonymAction.NodeRequest request, Task task) {
+        String rules = registry.coordinatedRules(request.getId(), request.getHash());
+        return new PullSynonymAction.NodeResponse(clusterService.localNode(), rules);
+    }
+}
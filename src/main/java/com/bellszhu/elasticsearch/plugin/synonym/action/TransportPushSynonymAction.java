@@ -0,0 +1,76 @@
+package com.bellszhu.elasticsearch.plugin.synonym.action;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymRegistry;
+
+/**
+ * @author bellszhu
+ */
+public class TransportPushSynonymAction extends TransportNodesAction<
+        PushSynonymAction.Request,
+        PushSynonymAction.Response,
+        PushSynonymAction.NodeRequest,
+        PushSynonymAction.NodeResponse> {
+
+    private final SynonymRegistry registry;
+
+    @Inject
+    public TransportPushSynonymAction(
+            ThreadPool threadPool,
+            ClusterService clusterService,
+            TransportService transportService,
+            ActionFilters actionFilters,
+            SynonymRegistry registry
+    ) {
+        super(
+                PushSynonymAction.NAME,
+                threadPool,
+                clusterService,
+                transportService,
+                actionFilters,
+                PushSynonymAction.Request::new,
+                PushSynonymAction.NodeRequest::new,
+                ThreadPool.Names.GENERIC,
+                PushSynonymAction.NodeResponse.class
+        );
+        this.registry = registry;
+    }
+
+    @Override
+    protected PushSynonymAction.Response newResponse(
+            PushSynonymAction.Request request,
+            List<PushSynonymAction.NodeResponse> responses,
+            List<FailedNodeException> failures
+    ) {
+        return new PushSynonymAction.Response(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected PushSynonymAction.NodeRequest newNodeRequest(PushSynonymAction.Request request) {
+        return new PushSynonymAction.NodeRequest(request);
+    }
+
+    @Override
+    protected PushSynonymAction.NodeResponse newNodeResponse(StreamInput in, DiscoveryNode node) throws IOException {
+        return new PushSynonymAction.NodeResponse(in);
+    }
+
+    @Override
+    protected PushSynonymAction.NodeResponse nodeOperation(PushSynonymAction.NodeRequest request, Task task) {
+        int applied = registry.applyRules(request.getId(), request.getRules());
+        return new PushSynonymAction.NodeResponse(clusterService.localNode(), applied);
+    }
+}
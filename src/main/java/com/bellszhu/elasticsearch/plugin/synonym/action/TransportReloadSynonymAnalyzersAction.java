@@ -0,0 +1,140 @@
+package com.bellszhu.elasticsearch.plugin.synonym.action;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.analysis.TokenFilterFactory;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymRegistry;
+
+/**
+ * Reloads the search analyzers of the local indices the same way as
+ * {@code _reload_search_analyzers}, and releases the synonym filters of the
+ * replaced analyzers right away.
+ *
+ * @author bellszhu
+ */
+public class TransportReloadSynonymAnalyzersAction extends TransportNodesAction<
+        ReloadSynonymAnalyzersAction.Request,
+        ReloadSynonymAnalyzersAction.Response,
+        ReloadSynonymAnalyzersAction.NodeRequest,
+        ReloadSynonymAnalyzersAction.NodeResponse> {
+
+    private static final Logger logger = LogManager.getLogger("dynamic-synonym");
+
+    private final IndicesService indicesService;
+    private final IndexNameExpressionResolver indexNameExpressionResolver;
+    private final SynonymRegistry registry;
+
+    @Inject
+    public TransportReloadSynonymAnalyzersAction(
+            ThreadPool threadPool,
+            ClusterService clusterService,
+            TransportService transportService,
+            ActionFilters actionFilters,
+            IndicesService indicesService,
+            IndexNameExpressionResolver indexNameExpressionResolver,
+            SynonymRegistry registry
+    ) {
+        super(
+                ReloadSynonymAnalyzersAction.NAME,
+                threadPool,
+                clusterService,
+                transportService,
+                actionFilters,
+                ReloadSynonymAnalyzersAction.Request::new,
+                ReloadSynonymAnalyzersAction.NodeRequest::new,
+                ThreadPool.Names.MANAGEMENT,
+                ReloadSynonymAnalyzersAction.NodeResponse.class
+        );
+        this.indicesService = indicesService;
+        this.indexNameExpressionResolver = indexNameExpressionResolver;
+        this.registry = registry;
+    }
+
+    /**
+     * Resolve the index expressions like any indices request, so wildcards,
+     * aliases and closed indices behave as for {@code _reload_search_analyzers}.
+     */
+    @Override
+    protected void doExecute(
+            Task task,
+            ReloadSynonymAnalyzersAction.Request request,
+            ActionListener<ReloadSynonymAnalyzersAction.Response> listener
+    ) {
+        String[] concreteIndices;
+        try {
+            concreteIndices = indexNameExpressionResolver.concreteIndexNames(clusterService.state(), request);
+        } catch (Exception e) {
+            listener.onFailure(e);
+            return;
+        }
+        super.doExecute(task, request.indices(concreteIndices), listener);
+    }
+
+    @Override
+    protected ReloadSynonymAnalyzersAction.Response newResponse(
+            ReloadSynonymAnalyzersAction.Request request,
+            List<ReloadSynonymAnalyzersAction.NodeResponse> responses,
+            List<FailedNodeException> failures
+    ) {
+        return new ReloadSynonymAnalyzersAction.Response(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected ReloadSynonymAnalyzersAction.NodeRequest newNodeRequest(ReloadSynonymAnalyzersAction.Request request) {
+        return new ReloadSynonymAnalyzersAction.NodeRequest(request.indices());
+    }
+
+    @Override
+    protected ReloadSynonymAnalyzersAction.NodeResponse newNodeResponse(StreamInput in, DiscoveryNode node)
+            throws IOException {
+        return new ReloadSynonymAnalyzersAction.NodeResponse(in);
+    }
+
+    @Override
+    protected ReloadSynonymAnalyzersAction.NodeResponse nodeOperation(
+            ReloadSynonymAnalyzersAction.NodeRequest request, Task task) {
+        Set<String> indices = Set.copyOf(List.of(request.getIndices()));
+        Map<String, List<String>> reloaded = new TreeMap<>();
+        for (IndexService indexService : indicesService) {
+            String index = indexService.index().getName();
+            if (!indices.contains(index)) {
+                continue;
+            }
+            List<TokenFilterFactory> previous = registry.reloadableFilters(indexService.getIndexAnalyzers());
+            try {
+                List<String> analyzers = indexService.mapperService().reloadSearchAnalyzers(indicesService.getAnalysis());
+                if (!analyzers.isEmpty()) {
+                    reloaded.put(index, analyzers);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to reload the search analyzers of " + index, e);
+            }
+            // the rebuilt analyzers use new filters, stop the replaced ones now instead of on garbage collection
+            registry.release(previous);
+            logger.info("reloaded search analyzers {} of {}", reloaded.get(index), index);
+        }
+        return new ReloadSynonymAnalyzersAction.NodeResponse(clusterService.localNode(), reloaded);
+    }
+}
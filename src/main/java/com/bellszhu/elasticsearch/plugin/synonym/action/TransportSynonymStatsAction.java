@@ -0,0 +1,75 @@
+package com.bellszhu.elasticsearch.plugin.synonym.action;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymRegistry;
+
+/**
+ * @author bellszhu
+ */
+public class TransportSynonymStatsAction extends TransportNodesAction<
+        SynonymStatsAction.Request,
+        SynonymStatsAction.Response,
+        SynonymStatsAction.NodeRequest,
+        SynonymStatsAction.NodeResponse> {
+
+    private final SynonymRegistry registry;
+
+    @Inject
+    public TransportSynonymStatsAction(
+            ThreadPool threadPool,
+            ClusterService clusterService,
+            TransportService transportService,
+            ActionFilters actionFilters,
+            SynonymRegistry registry
+    ) {
+        super(
+                SynonymStatsAction.NAME,
+                threadPool,
+                clusterService,
+                transportService,
+                actionFilters,
+                SynonymStatsAction.Request::new,
+                SynonymStatsAction.NodeRequest::new,
+                ThreadPool.Names.MANAGEMENT,
+                SynonymStatsAction.NodeResponse.class
+        );
+        this.registry = registry;
+    }
+
+    @Override
+    protected SynonymStatsAction.Response newResponse(
+            SynonymStatsAction.Request request,
+            List<SynonymStatsAction.NodeResponse> responses,
+            List<FailedNodeException> failures
+    ) {
+        return new SynonymStatsAction.Response(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected SynonymStatsAction.NodeRequest newNodeRequest(SynonymStatsAction.Request request) {
+        return new SynonymStatsAction.NodeRequest();
+    }
+
+    @Override
+    protected SynonymStatsAction.NodeResponse newNodeResponse(StreamInput in, DiscoveryNode node) throws IOException {
+        return new SynonymStatsAction.NodeResponse(in);
+    }
+
+    @Override
+    protected SynonymStatsAction.NodeResponse nodeOperation(SynonymStatsAction.NodeRequest request, Task task) {
+        return new SynonymStatsAction.NodeResponse(clusterService.localNode(), registry.stats());
+    }
+}
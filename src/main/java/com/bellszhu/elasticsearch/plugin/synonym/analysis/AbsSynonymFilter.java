@@ -1,13 +1,76 @@
 package com.bellszhu.elasticsearch.plugin.synonym.analysis;
 
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.payloads.PayloadHelper;
 import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.search.BoostAttribute;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.fst.FST;
 
 /**
  * @author bellszhu
  */
 public abstract class AbsSynonymFilter extends TokenFilter {
+
+    private final CharsRef scratchWord = new CharsRef();
+    private final BytesRef scratchBytes = new BytesRef();
+    private final CharsRefBuilder scratchChars = new CharsRefBuilder();
+
+    /**
+     * Tenant of the tokens, null if the map has no tenants
+     */
+    private TenantAttribute tenantAtt;
+    /**
+     * Weight of the output tokens as their boost, null if weights are disabled
+     */
+    private BoostAttribute boostAtt;
+    /**
+     * Also emit the weights as float payloads, null if disabled
+     */
+    private PayloadAttribute payloadAtt;
+    /**
+     * Weight of the last output word
+     */
+    private float outputWeight = 1f;
+
+    /**
+     * Limits of the outputs per match and per token stream, unlimited by default
+     */
+    private int maxOutputsPerMatch = Integer.MAX_VALUE;
+    private boolean outputsByWeight;
+    private int maxExpansions = Integer.MAX_VALUE;
+    /**
+     * Outputs emitted since the last reset
+     */
+    private int expansions;
+    /**
+     * Output words of the current match, the selected ones first
+     */
+    private int[] matchOutputs = new int[4];
+    private float[] matchWeights = new float[4];
+
+    private SynonymMap synonymMap;
+    /**
+     * Current synonym map of the factory, null if the map never changes
+     */
+    private Supplier<SynonymMap> currentSynonyms;
+
+    /**
+     * Byte readers of the FST of each map a match can be looked up in
+     */
+    private final Map<SynonymMap, FST.BytesReader> readers = new IdentityHashMap<>();
+
     /**
      * Construct a token stream filtering the given input.
      *
@@ -17,5 +80,190 @@ public abstract class AbsSynonymFilter extends TokenFilter {
         super(input);
     }
 
+    /**
+     * Switch to another synonym map, only called between two token streams.
+     */
     abstract void update(SynonymMap synonymMap);
+
+    /**
+     * Pick up the current synonym map of the factory on every reset, so a
+     * reused filter serves a reloaded map from its next token stream on.
+     */
+    final void followSynonyms(Supplier<SynonymMap> currentSynonyms) {
+        this.currentSynonyms = currentSynonyms;
+    }
+
+    /**
+     * Select the map of the tenant set on the tokens.
+     */
+    final void selectTenants() {
+        tenantAtt = addAttribute(TenantAttribute.class);
+    }
+
+    /**
+     * Emit the weight of the weighted outputs as the boost of their tokens.
+     */
+    final void boostWeights() {
+        boostAtt = addAttribute(BoostAttribute.class);
+    }
+
+    /**
+     * Emit the weight of the weighted outputs as a float payload too, for index time scoring.
+     */
+    final void weightPayloads() {
+        payloadAtt = addAttribute(PayloadAttribute.class);
+    }
+
+    /**
+     * Cap the outputs of a match, keeping the first ones in rule order or the
+     * heaviest ones, and the outputs of the whole token stream.
+     */
+    final void limitOutputs(int maxOutputsPerMatch, boolean outputsByWeight, int maxExpansions) {
+        this.maxOutputsPerMatch = maxOutputsPerMatch;
+        this.outputsByWeight = outputsByWeight;
+        this.maxExpansions = maxExpansions;
+    }
+
+    /**
+     * Read the output words of a match and select the ones to emit within the limits.
+     *
+     * @return the number of outputs to emit, available through {@link #matchOutput(int)}.
+     * The original tokens must be kept if none is left.
+     */
+    final int selectOutputs(SynonymMap synonyms, ByteArrayDataInput bytesReader, int count) {
+        if (matchOutputs.length < count) {
+            matchOutputs = ArrayUtil.grow(matchOutputs, count);
+        }
+        for (int i = 0; i < count; i++) {
+            matchOutputs[i] = bytesReader.readVInt();
+        }
+        int selected = Math.min(count, Math.min(maxOutputsPerMatch, maxExpansions - expansions));
+        if (selected < count && selected > 0 && outputsByWeight) {
+            if (matchWeights.length < count) {
+                matchWeights = ArrayUtil.grow(matchWeights, count);
+            }
+            for (int i = 0; i < count; i++) {
+                outputWord(synonyms, matchOutputs[i]);
+                matchWeights[i] = outputWeight;
+            }
+            // stable, outputs of the same weight stay in rule order
+            for (int i = 1; i < count; i++) {
+                int id = matchOutputs[i];
+                float weight = matchWeights[i];
+                int j = i - 1;
+                for (; j >= 0 && matchWeights[j] < weight; j--) {
+                    matchOutputs[j + 1] = matchOutputs[j];
+                    matchWeights[j + 1] = matchWeights[j];
+                }
+                matchOutputs[j + 1] = id;
+                matchWeights[j + 1] = weight;
+            }
+        }
+        expansions += selected;
+        return selected;
+    }
+
+    final int matchOutput(int index) {
+        return matchOutputs[index];
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        expansions = 0;
+        if (currentSynonyms != null) {
+            SynonymMap current = currentSynonyms.get();
+            // null once the factory is released, keep the map the filter has
+            if (current != null && current != synonymMap) {
+                update(current);
+            }
+        }
+    }
+
+    /**
+     * Set the weight of the output token, the attributes were cleared before.
+     */
+    final void setWeight(float weight) {
+        if (weight == 1f) {
+            return;
+        }
+        if (boostAtt != null) {
+            boostAtt.setBoost(weight);
+        }
+        if (payloadAtt != null) {
+            payloadAtt.setPayload(new BytesRef(PayloadHelper.encodeFloat(weight)));
+        }
+    }
+
+    final void updateMaps(SynonymMap synonymMap) {
+        this.synonymMap = synonymMap;
+        readers.clear();
+        if (synonymMap instanceof TenantSynonymMap) {
+            TenantSynonymMap tenantMap = (TenantSynonymMap) synonymMap;
+            addReaders(tenantMap.getDefaultMap());
+            for (SynonymMap tenant : tenantMap.getTenants().values()) {
+                addReaders(tenant);
+            }
+        } else {
+            addReaders(synonymMap);
+        }
+    }
+
+    private void addReaders(SynonymMap map) {
+        SynonymMap[] partitions = map instanceof PartitionedSynonymMap
+                ? ((PartitionedSynonymMap) map).getPartitions() : new SynonymMap[]{map};
+        for (SynonymMap partition : partitions) {
+            if (partition.fst != null) {
+                readers.put(partition, partition.fst.getBytesReader());
+            }
+        }
+    }
+
+    /**
+     * @return the map, i.e. the partition of the map of the tenant of the stream,
+     * that holds the rules starting with the given token.
+     */
+    final SynonymMap select(char[] token, int length) {
+        SynonymMap map = synonymMap instanceof TenantSynonymMap
+                ? ((TenantSynonymMap) synonymMap).get(tenant()) : synonymMap;
+        if (map instanceof PartitionedSynonymMap) {
+            SynonymMap[] partitions = ((PartitionedSynonymMap) map).getPartitions();
+            map = partitions[PartitionedSynonymMap.partition(token, 0, length, partitions.length)];
+        }
+        return map;
+    }
+
+    /**
+     * @return the tenant of the stream, null if the map has no tenants or the stream is not marked.
+     */
+    final String tenant() {
+        return tenantAtt == null ? null : tenantAtt.getTenant();
+    }
+
+    final FST.BytesReader reader(SynonymMap map) {
+        return readers.get(map);
+    }
+
+    /**
+     * @return the output word without its weight, only valid until the next call.
+     */
+    final CharsRef outputWord(SynonymMap synonyms, int wordId) {
+        CharsRef word;
+        if (synonyms instanceof CompactSynonymMap) {
+            word = ((CompactSynonymMap) synonyms).word(wordId, scratchWord);
+        } else {
+            synonyms.words.get(wordId, scratchBytes);
+            scratchChars.copyUTF8Bytes(scratchBytes);
+            word = scratchChars.get();
+        }
+        outputWeight = WeightedSynonymParser.stripWeight(word);
+        return word;
+    }
+
+    /**
+     * @return the weight of the last output word, 1 if it has none.
+     */
+    final float outputWeight() {
+        return outputWeight;
+    }
 }
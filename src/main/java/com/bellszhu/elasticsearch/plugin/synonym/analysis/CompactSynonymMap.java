@@ -0,0 +1,106 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * Synonym map whose output words are decoded once at build time into a single
+ * char array with an offset table, instead of the words hash with its block
+ * pool, length prefixes and hash table. A match points at its words in place,
+ * without decoding or copying. Two bytes per char cost about what the hash
+ * spends per word on short words.
+ *
+ * @author bellszhu
+ */
+final class CompactSynonymMap extends SynonymMap {
+
+    /**
+     * Output words, word i spans chars [offsets[i], offsets[i + 1])
+     */
+    private final char[] chars;
+    private final int[] offsets;
+
+    private CompactSynonymMap(SynonymMap synonymMap, char[] chars, int[] offsets) {
+        super(synonymMap.fst, new BytesRefHash(), synonymMap.maxHorizontalContext);
+        this.chars = chars;
+        this.offsets = offsets;
+    }
+
+    /**
+     * @return a compact copy of the synonym map, or the map itself if it has no synonyms,
+     * is compact already or is partitioned, whose partitions are compacted when built.
+     */
+    static SynonymMap compact(SynonymMap synonymMap) {
+        if (synonymMap.fst == null || synonymMap instanceof CompactSynonymMap || synonymMap instanceof PartitionedSynonymMap) {
+            return synonymMap;
+        }
+        int size = synonymMap.words.size();
+        int[] offsets = new int[size + 1];
+        char[] chars = CharsRef.EMPTY_CHARS;
+        BytesRef scratchBytes = new BytesRef();
+        CharsRefBuilder scratchChars = new CharsRefBuilder();
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            synonymMap.words.get(i, scratchBytes);
+            scratchChars.copyUTF8Bytes(scratchBytes);
+            chars = ArrayUtil.grow(chars, length + scratchChars.length());
+            System.arraycopy(scratchChars.chars(), 0, chars, length, scratchChars.length());
+            length += scratchChars.length();
+            offsets[i + 1] = length;
+        }
+        return new CompactSynonymMap(synonymMap, ArrayUtil.copyOfSubArray(chars, 0, length), offsets);
+    }
+
+    /**
+     * Point the spare at the given output word, without copying.
+     *
+     * @return the spare, the words must not be modified through it.
+     */
+    CharsRef word(int wordId, CharsRef spare) {
+        spare.chars = chars;
+        spare.offset = offsets[wordId];
+        spare.length = offsets[wordId + 1] - offsets[wordId];
+        return spare;
+    }
+
+    /**
+     * @return the number of distinct output words of the map.
+     */
+    static int wordCount(SynonymMap synonymMap) {
+        if (synonymMap == null || synonymMap.fst == null) {
+            return 0;
+        }
+        if (synonymMap instanceof PartitionedSynonymMap) {
+            int count = 0;
+            for (SynonymMap partition : ((PartitionedSynonymMap) synonymMap).getPartitions()) {
+                count += wordCount(partition);
+            }
+            return count;
+        }
+        if (synonymMap instanceof CompactSynonymMap) {
+            return ((CompactSynonymMap) synonymMap).offsets.length - 1;
+        }
+        return synonymMap.words.size();
+    }
+
+    static long fstBytes(SynonymMap synonymMap) {
+        if (synonymMap instanceof PartitionedSynonymMap) {
+            long bytes = 0;
+            for (SynonymMap partition : ((PartitionedSynonymMap) synonymMap).getPartitions()) {
+                bytes += fstBytes(partition);
+            }
+            return bytes;
+        }
+        return synonymMap == null || synonymMap.fst == null ? 0 : synonymMap.fst.ramBytesUsed();
+    }
+
+    long ramBytesUsed() {
+        return fst.ramBytesUsed() + RamUsageEstimator.sizeOf(chars) + RamUsageEstimator.sizeOf(offsets)
+                + RamUsageEstimator.shallowSizeOf(this);
+    }
+}
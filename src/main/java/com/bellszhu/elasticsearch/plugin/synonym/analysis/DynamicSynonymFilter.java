@@ -34,6 +34,7 @@ import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.CharsRef;
 import org.apache.lucene.util.CharsRefBuilder;
 import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.fst.ByteSequenceOutputs;
 import org.apache.lucene.util.fst.FST;
 
 /**
@@ -118,9 +119,11 @@ public final class DynamicSynonymFilter extends AbsSynonymFilter {
     private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
     private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
     private final ByteArrayDataInput bytesReader = new ByteArrayDataInput();
-    private final BytesRef scratchBytes = new BytesRef();
-    private final CharsRefBuilder scratchChars = new CharsRefBuilder();
     private SynonymMap synonyms;
+    /**
+     * Partition of the synonym map the current match was found in
+     */
+    private SynonymMap matchSynonyms;
     private int rollBufferSize;
 
     private int captureCount;
@@ -202,10 +205,7 @@ public final class DynamicSynonymFilter extends AbsSynonymFilter {
         int matchInputLength = 0;
         int matchEndOffset = -1;
 
-        BytesRef pendingOutput = fst.outputs.getNoOutput();
-        fst.getFirstArc(scratchArc);
-
-        assert scratchArc.output() == fst.outputs.getNoOutput();
+        BytesRef pendingOutput = ByteSequenceOutputs.getSingleton().getNoOutput();
 
         int tokenCount = 0;
 
@@ -258,6 +258,18 @@ public final class DynamicSynonymFilter extends AbsSynonymFilter {
 
             tokenCount++;
 
+            if (tokenCount == 1) {
+                // the tenant and the first token decide which map can match
+                matchSynonyms = select(buffer, bufferLen);
+                fst = matchSynonyms.fst;
+                fstReader = reader(matchSynonyms);
+                if (fst == null) {
+                    break;
+                }
+                fst.getFirstArc(scratchArc);
+                assert scratchArc.output() == fst.outputs.getNoOutput();
+            }
+
             // Run each char in this token through the FST:
             int bufUpto = 0;
             while (bufUpto < bufferLen) {
@@ -329,22 +341,23 @@ public final class DynamicSynonymFilter extends AbsSynonymFilter {
         bytesReader.reset(bytes.bytes, bytes.offset, bytes.length);
 
         final int code = bytesReader.readVInt();
-        final boolean keepOrig = (code & 0x1) == 0;
-        final int count = code >>> 1;
+        final int count = selectOutputs(matchSynonyms, bytesReader, code >>> 1);
+        // the original tokens stay if the limits dropped every output
+        final boolean keepOrig = (code & 0x1) == 0 || count == 0;
         for (int outputIDX = 0; outputIDX < count; outputIDX++) {
-            synonyms.words.get(bytesReader.readVInt(), scratchBytes);
-            scratchChars.copyUTF8Bytes(scratchBytes);
+            final CharsRef output = outputWord(matchSynonyms, matchOutput(outputIDX));
+            final float weight = outputWeight();
             int lastStart = 0;
-            final int chEnd = lastStart + scratchChars.length();
+            final int chEnd = lastStart + output.length;
             int outputUpto = nextRead;
             for (int chIDX = lastStart; chIDX <= chEnd; chIDX++) {
                 if (chIDX == chEnd
-                        || scratchChars.charAt(chIDX) == SynonymMap.WORD_SEPARATOR) {
+                        || output.chars[output.offset + chIDX] == SynonymMap.WORD_SEPARATOR) {
                     final int outputLen = chIDX - lastStart;
                     // Caller is not allowed to have empty string in
                     // the output:
                     assert outputLen > 0 : "output contains empty string: "
-                            + scratchChars;
+                            + output;
                     final int endOffset;
                     final int posLen;
                     if (chIDX == chEnd && lastStart == 0) {
@@ -362,8 +375,8 @@ public final class DynamicSynonymFilter extends AbsSynonymFilter {
                         endOffset = -1;
                         posLen = 1;
                     }
-                    futureOutputs[outputUpto].add(scratchChars.chars(),
-                            lastStart, outputLen, endOffset, posLen);
+                    futureOutputs[outputUpto].add(output.chars,
+                            output.offset + lastStart, outputLen, endOffset, posLen, weight);
                     lastStart = 1 + chIDX;
                     outputUpto = rollIncr(outputUpto);
                     assert futureOutputs[outputUpto].posIncr == 1 : "outputUpto="
@@ -443,6 +456,7 @@ public final class DynamicSynonymFilter extends AbsSynonymFilter {
                     offsetAtt.setOffset(input.startOffset, endOffset);
                     posIncrAtt.setPositionIncrement(posIncr);
                     posLenAtt.setPositionLength(outputs.getLastPosLength());
+                    setWeight(outputs.getLastWeight());
                     if (outputs.count == 0) {
                         // Done with the buffered input and all outputs at
                         // this position
@@ -477,6 +491,7 @@ public final class DynamicSynonymFilter extends AbsSynonymFilter {
                             output.length);
                     typeAtt.setType(TYPE_SYNONYM);
                     posIncrAtt.setPositionIncrement(posIncr);
+                    setWeight(outputs.getLastWeight());
                     return true;
                 } else {
                     return false;
@@ -512,25 +527,36 @@ public final class DynamicSynonymFilter extends AbsSynonymFilter {
 
     void update(SynonymMap synonymMap) {
         this.synonyms = synonymMap;
+        // fst is null while the map has no synonyms, no token matches then
         this.fst = synonyms.fst;
-        if (fst == null) {
-            throw new IllegalArgumentException("fst must be non-null");
-        }
-        this.fstReader = fst.getBytesReader();
+        this.fstReader = fst == null ? null : fst.getBytesReader();
+        this.matchSynonyms = synonymMap;
+        updateMaps(synonymMap);
 
         // Must be 1+ so that when roll buffer is at full
         // lookahead we can distinguish this full buffer from
         // the empty buffer:
         rollBufferSize = 1 + synonyms.maxHorizontalContext;
 
-        futureInputs = new PendingInput[rollBufferSize];
-        futureOutputs = new PendingOutputs[rollBufferSize];
-        for (int pos = 0; pos < rollBufferSize; pos++) {
-            futureInputs[pos] = new PendingInput();
-            futureOutputs[pos] = new PendingOutputs();
+        // The rolling buffers are only reallocated if they must grow,
+        // the positions past rollBufferSize are simply not used:
+        if (futureInputs == null || futureInputs.length < rollBufferSize) {
+            futureInputs = new PendingInput[rollBufferSize];
+            futureOutputs = new PendingOutputs[rollBufferSize];
+            for (int pos = 0; pos < rollBufferSize; pos++) {
+                futureInputs[pos] = new PendingInput();
+                futureOutputs[pos] = new PendingOutputs();
+            }
+        }
+
+        if (scratchArc == null) {
+            scratchArc = new FST.Arc<>();
         }
+    }
 
-        scratchArc = new FST.Arc<>();
+    // for testing
+    int getRollBufferCapacity() {
+        return futureInputs.length;
     }
 
     // Hold all buffered (read ahead) stacked input tokens for
@@ -561,16 +587,19 @@ public final class DynamicSynonymFilter extends AbsSynonymFilter {
         CharsRefBuilder[] outputs;
         int[] endOffsets;
         int[] posLengths;
+        float[] weights;
         int upto;
         int count;
         int posIncr = 1;
         int lastEndOffset;
         int lastPosLength;
+        float lastWeight;
 
         PendingOutputs() {
             outputs = new CharsRefBuilder[1];
             endOffsets = new int[1];
             posLengths = new int[1];
+            weights = new float[1];
         }
 
         void reset() {
@@ -582,6 +611,7 @@ public final class DynamicSynonymFilter extends AbsSynonymFilter {
             assert upto < count;
             lastEndOffset = endOffsets[upto];
             lastPosLength = posLengths[upto];
+            lastWeight = weights[upto];
             final CharsRefBuilder result = outputs[upto++];
             posIncr = 0;
             if (upto == count) {
@@ -598,8 +628,12 @@ public final class DynamicSynonymFilter extends AbsSynonymFilter {
             return lastPosLength;
         }
 
+        float getLastWeight() {
+            return lastWeight;
+        }
+
         void add(char[] output, int offset, int len, int endOffset,
-                 int posLength) {
+                 int posLength, float weight) {
             if (count == outputs.length) {
                 outputs = Arrays.copyOf(outputs, ArrayUtil.oversize(1 + count,
                         RamUsageEstimator.NUM_BYTES_OBJECT_REF));
@@ -616,6 +650,9 @@ public final class DynamicSynonymFilter extends AbsSynonymFilter {
                 System.arraycopy(posLengths, 0, next, 0, count);
                 posLengths = next;
             }
+            if (count == weights.length) {
+                weights = ArrayUtil.growExact(weights, ArrayUtil.oversize(1 + count, Float.BYTES));
+            }
             if (outputs[count] == null) {
                 outputs[count] = new CharsRefBuilder();
             }
@@ -625,6 +662,7 @@ public final class DynamicSynonymFilter extends AbsSynonymFilter {
             // which case we use X as the endOffset for this output
             endOffsets[count] = endOffset;
             posLengths[count] = posLength;
+            weights[count] = weight;
             count++;
         }
     }
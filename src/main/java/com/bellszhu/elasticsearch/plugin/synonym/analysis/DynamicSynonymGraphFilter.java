@@ -19,6 +19,7 @@ package com.bellszhu.elasticsearch.plugin.synonym.analysis;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -32,9 +33,12 @@ import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRef;
 import org.apache.lucene.util.CharsRefBuilder;
 import org.apache.lucene.util.RollingBuffer;
+import org.apache.lucene.util.fst.ByteSequenceOutputs;
 import org.apache.lucene.util.fst.FST;
 
 // TODO: maybe we should resolve token -> wordID then run
@@ -89,15 +93,31 @@ public final class DynamicSynonymGraphFilter extends AbsSynonymFilter {
   private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
 
   private SynonymMap synonyms;
+  // Partition of the synonym map the current match was found in
+  private SynonymMap matchSynonyms;
   private final boolean ignoreCase;
 
   private FST<BytesRef> fst;
 
   private FST.BytesReader fstReader;
   private FST.Arc<BytesRef> scratchArc;
+  // State of the FST walk of the current parse:
+  private BytesRef pendingOutput;
+  private BytesRef matchOutput;
+  private int matchInputLength;
+
+  // Matches shared by the filters of the factory, null if disabled:
+  private ExpansionCache expansionCache;
+  // Generation of the current map in the cache, NONE if the cache is not used:
+  private long cacheGeneration = ExpansionCache.NONE;
+  private final BytesRef cachedOutput = new BytesRef();
+  // Tokens of the current walk, added to the cache once it ends:
+  private final CharsRefBuilder walkedChars = new CharsRefBuilder();
+  private int[] walkedEnds = new int[4];
+  private int walkedTokens;
+  // Weight of each output path of the current match, reused across matches:
+  private float[] pathWeights = new float[4];
   private final ByteArrayDataInput bytesReader = new ByteArrayDataInput();
-  private final BytesRef scratchBytes = new BytesRef();
-  private final CharsRefBuilder scratchChars = new CharsRefBuilder();
   private final LinkedList<BufferedOutputToken> outputBuffer = new LinkedList<>();
 
   private int nextNodeOut;
@@ -152,11 +172,19 @@ public final class DynamicSynonymGraphFilter extends AbsSynonymFilter {
     final int startNode;
     final int endNode;
 
+    // Weight of the synonym output, 1 for incoming tokens:
+    final float weight;
+
     public BufferedOutputToken(State state, String term, int startNode, int endNode) {
+      this(state, term, startNode, endNode, 1f);
+    }
+
+    BufferedOutputToken(State state, String term, int startNode, int endNode, float weight) {
       this.state = state;
       this.term = term;
       this.startNode = startNode;
       this.endNode = endNode;
+      this.weight = weight;
     }
   }
 
@@ -262,6 +290,7 @@ public final class DynamicSynonymGraphFilter extends AbsSynonymFilter {
       offsetAtt.setOffset(matchStartOffset, matchEndOffset);
       //System.out.println("    startOffset=" + matchStartOffset + " endOffset=" + matchEndOffset);
       typeAtt.setType(TYPE_SYNONYM);
+      setWeight(token.weight);
     }
 
     //System.out.println("    lastNodeOut=" + lastNodeOut);
@@ -278,22 +307,24 @@ public final class DynamicSynonymGraphFilter extends AbsSynonymFilter {
     // System.out.println(Thread.currentThread().getName() + ": S: parse: " + System.identityHashCode(this));
 
     // Holds the longest match we've seen so far:
-    BytesRef matchOutput = null;
-    int matchInputLength = 0;
+    matchOutput = null;
+    matchInputLength = 0;
 
-    BytesRef pendingOutput = fst.outputs.getNoOutput();
-    fst.getFirstArc(scratchArc);
-
-    assert scratchArc.output() == fst.outputs.getNoOutput();
+    pendingOutput = ByteSequenceOutputs.getSingleton().getNoOutput();
 
     // How many tokens in the current match
     int matchLength = 0;
     boolean doFinalCapture = false;
 
+    // Cached matching the tokens are compared with instead of walking the FST:
+    ExpansionCache.Entry cached = null;
+    // Add the walk to the cache once it is done:
+    boolean record = false;
+    boolean endOfInput = false;
+
     int lookaheadUpto = lookaheadNextRead;
     matchStartOffset = -1;
 
-    byToken:
     while (true) {
       //System.out.println("  cycle lookaheadUpto=" + lookaheadUpto + " maxPos=" + lookahead.getMaxPos());
       
@@ -322,6 +353,7 @@ public final class DynamicSynonymGraphFilter extends AbsSynonymFilter {
 
         if (finished) {
           //System.out.println("    break: finished");
+          endOfInput = true;
           break;
         } else if (input.incrementToken()) {
           //System.out.println("    input.incrToken");
@@ -337,6 +369,7 @@ public final class DynamicSynonymGraphFilter extends AbsSynonymFilter {
         } else {
           // No more input tokens
           finished = true;
+          endOfInput = true;
           //System.out.println("    break: now set finished");
           break;
         }
@@ -345,41 +378,61 @@ public final class DynamicSynonymGraphFilter extends AbsSynonymFilter {
       matchLength++;
       //System.out.println("    cycle term=" + new String(buffer, 0, bufferLen));
 
-      // Run each char in this token through the FST:
-      int bufUpto = 0;
-      while (bufUpto < bufferLen) {
-        final int codePoint = Character.codePointAt(buffer, bufUpto, bufferLen);
-        if (fst.findTargetArc(ignoreCase ? Character.toLowerCase(codePoint) : codePoint, scratchArc, scratchArc, fstReader) == null) {
-          break byToken;
+      if (matchLength == 1) {
+        // the tenant and the first token decide which map can match
+        matchSynonyms = select(buffer, bufferLen);
+        fst = matchSynonyms.fst;
+        fstReader = reader(matchSynonyms);
+        if (fst == null) {
+          break;
+        }
+        fst.getFirstArc(scratchArc);
+        assert scratchArc.output() == fst.outputs.getNoOutput();
+        if (cacheGeneration != ExpansionCache.NONE) {
+          cached = expansionCache.get(cacheGeneration, tenant(), buffer, bufferLen);
+          record = cached == null;
+          walkedChars.clear();
+          walkedTokens = 0;
         }
-
-        // Accum the output
-        pendingOutput = fst.outputs.add(pendingOutput, scratchArc.output());
-        bufUpto += Character.charCount(codePoint);
       }
 
-      assert bufUpto == bufferLen;
-
-      // OK, entire token matched; now see if this is a final
-      // state in the FST (a match):
-      if (scratchArc.isFinal()) {
-        matchOutput = fst.outputs.add(pendingOutput, scratchArc.nextFinalOutput());
-        matchInputLength = matchLength;
-        matchEndOffset = inputEndOffset;
-        //System.out.println("    ** match");
+      if (cached != null) {
+        if (cached.tokenEquals(matchLength - 1, buffer, bufferLen)) {
+          if (matchLength == cached.inputLength()) {
+            matchEndOffset = inputEndOffset;
+          }
+          if (matchLength == cached.examined()) {
+            // Same tokens as the cached walk, so the same match:
+            if (cached.output() != null) {
+              cachedOutput.bytes = cached.output();
+              cachedOutput.length = cached.output().length;
+              matchOutput = cachedOutput;
+              matchInputLength = cached.inputLength();
+            }
+            break;
+          }
+          doFinalCapture = true;
+          if (liveToken) {
+            capture();
+          }
+          continue;
+        }
+        // The input leaves the cached walk, walk the FST over the tokens
+        // both agree on, they are all buffered as the walk continued:
+        cached = null;
+        record = true;
+        walkTokens(matchLength - 1);
       }
 
-      // See if the FST can continue matching (ie, needs to
-      // see the next input token):
-      if (fst.findTargetArc(SynonymMap.WORD_SEPARATOR, scratchArc, scratchArc, fstReader) == null) {
+      if (record) {
+        recordToken(buffer, bufferLen);
+      }
+      if (walk(buffer, bufferLen, inputEndOffset, matchLength) == false) {
         // No further rules can match here; we're done
         // searching for matching rules starting at the
         // current input position.
         break;
       } else {
-        // More matching is possible -- accum the output (if
-        // any) of the WORD_SEP arc:
-        pendingOutput = fst.outputs.add(pendingOutput, scratchArc.output());
         doFinalCapture = true;
         if (liveToken) {
           capture();
@@ -387,6 +440,21 @@ public final class DynamicSynonymGraphFilter extends AbsSynonymFilter {
       }
     }
 
+    if (endOfInput) {
+      if (cached != null) {
+        // The input ended within the cached walk:
+        walkTokens(matchLength);
+      }
+      // The match depends on where the input ends, don't cache it
+      record = false;
+    }
+    if (record) {
+      expansionCache.put(cacheGeneration, tenant(), Arrays.copyOf(walkedChars.chars(), walkedChars.length()),
+          Arrays.copyOf(walkedEnds, walkedTokens),
+          matchOutput == null ? null : Arrays.copyOfRange(matchOutput.bytes, matchOutput.offset, matchOutput.offset + matchOutput.length),
+          matchInputLength);
+    }
+
     if (doFinalCapture && liveToken && finished == false) {
       // Must capture the final token if we captured any prior tokens:
       capture();
@@ -414,6 +482,68 @@ public final class DynamicSynonymGraphFilter extends AbsSynonymFilter {
     //System.out.println("  parse done inputSkipCount=" + inputSkipCount + " nextRead=" + nextRead + " nextWrite=" + nextWrite);
   }
 
+  /** Runs a token through the FST, keeping the longest match.  Returns
+   *  true if the next token may continue the match. */
+  private boolean walk(char[] buffer, int bufferLen, int inputEndOffset, int matchLength) throws IOException {
+    // Run each char in this token through the FST:
+    int bufUpto = 0;
+    while (bufUpto < bufferLen) {
+      final int codePoint = Character.codePointAt(buffer, bufUpto, bufferLen);
+      if (fst.findTargetArc(ignoreCase ? Character.toLowerCase(codePoint) : codePoint, scratchArc, scratchArc, fstReader) == null) {
+        return false;
+      }
+
+      // Accum the output
+      pendingOutput = fst.outputs.add(pendingOutput, scratchArc.output());
+      bufUpto += Character.charCount(codePoint);
+    }
+
+    assert bufUpto == bufferLen;
+
+    // OK, entire token matched; now see if this is a final
+    // state in the FST (a match):
+    if (scratchArc.isFinal()) {
+      matchOutput = fst.outputs.add(pendingOutput, scratchArc.nextFinalOutput());
+      matchInputLength = matchLength;
+      matchEndOffset = inputEndOffset;
+      //System.out.println("    ** match");
+    }
+
+    // See if the FST can continue matching (ie, needs to
+    // see the next input token):
+    if (fst.findTargetArc(SynonymMap.WORD_SEPARATOR, scratchArc, scratchArc, fstReader) == null) {
+      return false;
+    }
+    // More matching is possible -- accum the output (if
+    // any) of the WORD_SEP arc:
+    pendingOutput = fst.outputs.add(pendingOutput, scratchArc.output());
+    return true;
+  }
+
+  /** Walks the FST from the start over the first buffered tokens of the
+   *  match, the cached walk continued after each of them. */
+  private void walkTokens(int count) throws IOException {
+    fst.getFirstArc(scratchArc);
+    for (int i = 0; i < count; i++) {
+      BufferedInputToken token = lookahead.get(lookaheadNextRead + i);
+      recordToken(token.term.chars(), token.term.length());
+      boolean continues = walk(token.term.chars(), token.term.length(), token.endOffset, i + 1);
+      assert continues;
+    }
+  }
+
+  private void recordToken(char[] buffer, int bufferLen) {
+    walkedChars.append(buffer, 0, bufferLen);
+    walkedEnds = ArrayUtil.grow(walkedEnds, walkedTokens + 1);
+    walkedEnds[walkedTokens++] = walkedChars.length();
+  }
+
+  /** Caches the matches of this filter, shared with the other filters of its factory. */
+  void cacheExpansions(ExpansionCache expansionCache) {
+    this.expansionCache = expansionCache;
+    this.cacheGeneration = expansionCache.generation(synonyms);
+  }
+
   /** Expands the output graph into the necessary tokens, adding
    *  synonyms as side paths parallel to the input tokens, and
    *  buffers them in the output token buffer. */
@@ -421,7 +551,10 @@ public final class DynamicSynonymGraphFilter extends AbsSynonymFilter {
     bytesReader.reset(bytes.bytes, bytes.offset, bytes.length);
 
     final int code = bytesReader.readVInt();
-    final boolean keepOrig = (code & 0x1) == 0;
+    // How many synonyms we will insert over this match:
+    final int count = selectOutputs(matchSynonyms, bytesReader, code >>> 1);
+    // The original tokens stay if the limits dropped every output:
+    final boolean keepOrig = (code & 0x1) == 0 || count == 0;
     //System.out.println("  buffer: keepOrig=" + keepOrig + " matchInputLength=" + matchInputLength);
 
     // How many nodes along all paths; we need this to assign the
@@ -434,25 +567,25 @@ public final class DynamicSynonymGraphFilter extends AbsSynonymFilter {
       totalPathNodes = 0;
     }
 
-    // How many synonyms we will insert over this match:
-    final int count = code >>> 1;
-
     // TODO: we could encode this instead into the FST:
 
     // 1st pass: count how many new nodes we need
     List<List<String>> paths = new ArrayList<>();
+    if (pathWeights.length < count) {
+      pathWeights = ArrayUtil.grow(pathWeights, count);
+    }
     for(int outputIDX=0;outputIDX<count;outputIDX++) {
-      int wordID = bytesReader.readVInt();
-      synonyms.words.get(wordID, scratchBytes);
-      scratchChars.copyUTF8Bytes(scratchBytes);
+      int wordID = matchOutput(outputIDX);
+      CharsRef output = outputWord(matchSynonyms, wordID);
+      pathWeights[outputIDX] = outputWeight();
       int lastStart = 0;
 
       List<String> path = new ArrayList<>();
       paths.add(path);
-      int chEnd = scratchChars.length();
+      int chEnd = output.length;
       for(int chUpto=0; chUpto<=chEnd; chUpto++) {
-        if (chUpto == chEnd || scratchChars.charAt(chUpto) == SynonymMap.WORD_SEPARATOR) {
-          path.add(new String(scratchChars.chars(), lastStart, chUpto - lastStart));
+        if (chUpto == chEnd || output.chars[output.offset + chUpto] == SynonymMap.WORD_SEPARATOR) {
+          path.add(new String(output.chars, output.offset + lastStart, chUpto - lastStart));
           lastStart = 1 + chUpto;
         }
       }
@@ -477,7 +610,8 @@ public final class DynamicSynonymGraphFilter extends AbsSynonymFilter {
 
     // First, fanout all tokens departing start node for these new side paths:
     int newNodeCount = 0;
-    for(List<String> path : paths) {
+    for(int pathID=0;pathID<paths.size();pathID++) {
+      List<String> path = paths.get(pathID);
       int pathEndNode;
       //System.out.println("    path size=" + path.size());
       if (path.size() == 1) {
@@ -487,7 +621,7 @@ public final class DynamicSynonymGraphFilter extends AbsSynonymFilter {
         pathEndNode = nextNodeOut + newNodeCount + 1;
         newNodeCount += path.size() - 1;
       }
-      outputBuffer.add(new BufferedOutputToken(null, path.get(0), startNode, pathEndNode));
+      outputBuffer.add(new BufferedOutputToken(null, path.get(0), startNode, pathEndNode, pathWeights[pathID]));
     }
 
     // We must do the original tokens last, else the offsets "go backwards":
@@ -514,10 +648,10 @@ public final class DynamicSynonymGraphFilter extends AbsSynonymFilter {
       if (path.size() > 1) {
         int lastNode = outputBuffer.get(pathID).endNode;
         for(int i=1;i<path.size()-1;i++) {
-          outputBuffer.add(new BufferedOutputToken(null, path.get(i), lastNode, lastNode+1));
+          outputBuffer.add(new BufferedOutputToken(null, path.get(i), lastNode, lastNode+1, pathWeights[pathID]));
           lastNode++;
         }
-        outputBuffer.add(new BufferedOutputToken(null, path.get(path.size()-1), lastNode, endNode));
+        outputBuffer.add(new BufferedOutputToken(null, path.get(path.size()-1), lastNode, endNode, pathWeights[pathID]));
       }
     }
 
@@ -579,12 +713,17 @@ public final class DynamicSynonymGraphFilter extends AbsSynonymFilter {
 
   void update(SynonymMap synonymMap) {
     this.synonyms = synonymMap;
+    // fst is null while the map has no synonyms, no token matches then
     this.fst = synonyms.fst;
-    if (fst == null) {
-      throw new IllegalArgumentException("fst must be non-null");
+    this.fstReader = fst == null ? null : fst.getBytesReader();
+    this.matchSynonyms = synonymMap;
+    updateMaps(synonymMap);
+    if (expansionCache != null) {
+      cacheGeneration = expansionCache.generation(synonymMap);
+    }
+    if (scratchArc == null) {
+      scratchArc = new FST.Arc<>();
     }
-    this.fstReader = fst.getBytesReader();
-    scratchArc = new FST.Arc<>();
 
   }
 
@@ -6,8 +6,10 @@ import java.util.function.Function;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.synonym.SynonymMap;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.AnalysisMode;
 import org.elasticsearch.index.analysis.CharFilterFactory;
 import org.elasticsearch.index.analysis.TokenFilterFactory;
@@ -16,9 +18,9 @@ import org.elasticsearch.index.analysis.TokenizerFactory;
 public class DynamicSynonymGraphTokenFilterFactory extends DynamicSynonymTokenFilterFactory {
 
     public DynamicSynonymGraphTokenFilterFactory(
-            Environment env, String name, Settings settings
+            IndexSettings indexSettings, Environment env, String name, Settings settings, SynonymRegistry registry
     ) throws IOException {
-        super(env, name, settings);
+        super(indexSettings, env, name, settings, registry);
     }
 
     @Override
@@ -35,9 +37,9 @@ public class DynamicSynonymGraphTokenFilterFactory extends DynamicSynonymTokenFi
             Function<String, TokenFilterFactory> allFilters
     ) {
         final Analyzer analyzer = buildSynonymAnalyzer(tokenizer, charFilters, previousTokenFilters);
-        synonymMap = buildSynonyms(analyzer);
+        prepareSynonyms(analyzer);
         final String name = name();
-        return new TokenFilterFactory() {
+        return track(new TokenFilterFactory() {
             @Override
             public String name() {
                 return name;
@@ -45,14 +47,17 @@ public class DynamicSynonymGraphTokenFilterFactory extends DynamicSynonymTokenFi
 
             @Override
             public TokenStream create(TokenStream tokenStream) {
-                // fst is null means no synonyms
-                if (synonymMap.fst == null) {
+                tokenStream = markTenants(tokenStream);
+                SynonymMap synonymMap = synonyms(analyzer);
+                // fst is null means no synonyms, skip the filter unless a reload may bring some
+                if (synonymMap.fst == null && !isMonitored()) {
                     return tokenStream;
                 }
-                DynamicSynonymGraphFilter dynamicSynonymGraphFilter = new DynamicSynonymGraphFilter(
-                        tokenStream, synonymMap, false);
-                dynamicSynonymFilters.put(dynamicSynonymGraphFilter, 1);
-
+                DynamicSynonymGraphFilter dynamicSynonymGraphFilter = configure(new DynamicSynonymGraphFilter(
+                        tokenStream, synonymMap, false));
+                if (expansionCache != null) {
+                    dynamicSynonymGraphFilter.cacheExpansions(expansionCache);
+                }
                 return dynamicSynonymGraphFilter;
             }
 
@@ -60,6 +65,6 @@ public class DynamicSynonymGraphTokenFilterFactory extends DynamicSynonymTokenFi
             public AnalysisMode getAnalysisMode() {
                 return analysisMode;
             }
-        };
+        });
     }
 }
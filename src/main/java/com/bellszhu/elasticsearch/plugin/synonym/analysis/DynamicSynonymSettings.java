@@ -0,0 +1,277 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.analysis.AnalysisMode;
+
+/**
+ * Validated settings of a dynamic synonym filter.
+ *
+ * @author bellszhu
+ */
+final class DynamicSynonymSettings {
+
+    private final List<String> locations;
+    private final String location;
+    private final List<String> synonyms;
+    private final boolean expand;
+    private final boolean lenient;
+    private final String format;
+    private final boolean deduplicate;
+    private final boolean collapseEquivalences;
+    private final int partitions;
+    private final int interval;
+    private final boolean coordinated;
+    private final boolean reloadAnalyzers;
+    private final boolean watch;
+    private final int watchInterval;
+    private final boolean cache;
+    private final boolean lazy;
+    private final boolean warmup;
+    private final int minRules;
+    private final double minRulesRatio;
+    private final long maxBackoffMillis;
+    private final int failureThreshold;
+    /**
+     * Sources of each tenant
+     */
+    private final Map<String, List<String>> tenants;
+    private final String tenantMarker;
+    private final AnalysisMode analysisMode;
+    private final boolean weights;
+    private final boolean weightPayload;
+    private final int maxOutputsPerMatch;
+    private final boolean outputsByWeight;
+    private final int maxExpansions;
+    private final int expansionCacheSize;
+
+    DynamicSynonymSettings(Settings settings) {
+        this.locations = settings.getAsList("synonyms_path");
+        this.synonyms = settings.getAsList("synonyms");
+        if (locations.isEmpty() && synonyms.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "dynamic synonym requires either `synonyms` or `synonyms_path` to be configured");
+        }
+        this.location = locations.isEmpty() ? "synonyms" : String.join(",", locations);
+        this.format = settings.get("format", "");
+        if (SynonymArtifact.isBinary(format) && (locations.size() != 1 || !synonyms.isEmpty())) {
+            throw new IllegalArgumentException(
+                    "binary synonyms require a single `synonyms_path` and no inline `synonyms`");
+        }
+
+        this.interval = settings.getAsInt("interval", 60);
+        this.expand = settings.getAsBoolean("expand", true);
+        this.lenient = settings.getAsBoolean("lenient", false);
+        this.coordinated = settings.getAsBoolean("coordinated", false);
+        this.watch = settings.getAsBoolean("watch", false);
+        this.watchInterval = settings.getAsInt("watch_interval", 600);
+        if (watchInterval < 1) {
+            throw new IllegalArgumentException("`watch_interval` must be at least 1");
+        }
+        this.cache = settings.getAsBoolean("cache", false);
+        this.lazy = settings.getAsBoolean("lazy", false);
+        this.deduplicate = settings.getAsBoolean("deduplicate", false);
+        this.collapseEquivalences = settings.getAsBoolean("collapse_equivalences", false);
+        this.partitions = settings.getAsInt("partitions", 1);
+        if (partitions < 1) {
+            throw new IllegalArgumentException("`partitions` must be at least 1");
+        }
+        this.tenants = new LinkedHashMap<>();
+        for (Map.Entry<String, Settings> tenant : settings.getGroups("tenants").entrySet()) {
+            List<String> tenantLocations = tenant.getValue().getAsList("synonyms_path");
+            if (tenantLocations.isEmpty()) {
+                throw new IllegalArgumentException(
+                        "tenant [" + tenant.getKey() + "] requires `synonyms_path` to be configured");
+            }
+            if (SynonymArtifact.isBinary(format) && tenantLocations.size() != 1) {
+                throw new IllegalArgumentException(
+                        "binary synonyms of tenant [" + tenant.getKey() + "] require a single `synonyms_path`");
+            }
+            tenants.put(tenant.getKey(), tenantLocations);
+        }
+        this.tenantMarker = settings.get("tenant_marker", "__tenant_");
+        this.warmup = settings.getAsBoolean("warmup", false);
+        this.minRules = settings.getAsInt("min_rules", 0);
+        this.minRulesRatio = settings.getAsDouble("min_rules_ratio", 0.0);
+        this.maxBackoffMillis = TimeUnit.SECONDS.toMillis(settings.getAsInt("max_backoff", 600));
+        this.failureThreshold = settings.getAsInt("failure_threshold", 5);
+        boolean updateable = settings.getAsBoolean("updateable", false);
+        this.analysisMode = updateable ? AnalysisMode.SEARCH_TIME : AnalysisMode.ALL;
+        String reload = settings.get("reload", "monitor");
+        if (!"monitor".equals(reload) && !"analyzers".equals(reload)) {
+            throw new IllegalArgumentException("`reload` must be `monitor` or `analyzers`");
+        }
+        this.reloadAnalyzers = "analyzers".equals(reload);
+        if (reloadAnalyzers && (!updateable || coordinated || !tenants.isEmpty())) {
+            throw new IllegalArgumentException(
+                    "`reload: analyzers` requires `updateable` and does not support `coordinated` or `tenants`");
+        }
+        this.weights = settings.getAsBoolean("weights", false);
+        this.weightPayload = settings.getAsBoolean("weight_payload", false);
+        int maxOutputs = settings.getAsInt("max_outputs_per_match", 0);
+        int maxExpansions = settings.getAsInt("max_expansions", 0);
+        if (maxOutputs < 0 || maxExpansions < 0) {
+            throw new IllegalArgumentException("`max_outputs_per_match` and `max_expansions` must not be negative");
+        }
+        this.maxOutputsPerMatch = maxOutputs == 0 ? Integer.MAX_VALUE : maxOutputs;
+        this.maxExpansions = maxExpansions == 0 ? Integer.MAX_VALUE : maxExpansions;
+        String outputsOrder = settings.get("max_outputs_order", "rule");
+        if (!"rule".equals(outputsOrder) && !"weight".equals(outputsOrder)) {
+            throw new IllegalArgumentException("`max_outputs_order` must be `rule` or `weight`");
+        }
+        this.outputsByWeight = "weight".equals(outputsOrder);
+        this.expansionCacheSize = settings.getAsInt("expansion_cache_size", 0);
+        if (expansionCacheSize < 0) {
+            throw new IllegalArgumentException("`expansion_cache_size` must not be negative");
+        }
+    }
+
+    SynonymMapBuilder newMapBuilder() {
+        return new SynonymMapBuilder(format, expand, lenient, deduplicate, collapseEquivalences);
+    }
+
+    /**
+     * @return a builder of the partitioned map, null if the map is not partitioned.
+     */
+    PartitionedSynonymBuilder newPartitionedBuilder() {
+        return partitions > 1 && !SynonymArtifact.isBinary(format)
+                ? new PartitionedSynonymBuilder(partitions, format, expand, lenient) : null;
+    }
+
+    /**
+     * @return the number of new rules, if not below min_rules and min_rules_ratio of the current count.
+     */
+    int checkRuleCount(String location, int newRuleCount, int currentRuleCount) {
+        if (newRuleCount < minRules) {
+            throw new IllegalArgumentException("synonyms from " + location + " contain " + newRuleCount
+                    + " rules, less than min_rules [" + minRules + "], keep the current synonyms");
+        }
+        if (newRuleCount < currentRuleCount * minRulesRatio) {
+            throw new IllegalArgumentException("synonyms from " + location + " shrank from " + currentRuleCount
+                    + " to " + newRuleCount + " rules, below min_rules_ratio [" + minRulesRatio + "], keep the current synonyms");
+        }
+        return newRuleCount;
+    }
+
+    List<String> getLocations() {
+        return locations;
+    }
+
+    /**
+     * @return the sources joined, {@code synonyms} for inline synonyms only.
+     */
+    String getLocation() {
+        return location;
+    }
+
+    List<String> getSynonyms() {
+        return synonyms;
+    }
+
+    boolean isExpand() {
+        return expand;
+    }
+
+    boolean isLenient() {
+        return lenient;
+    }
+
+    String getFormat() {
+        return format;
+    }
+
+    int getInterval() {
+        return interval;
+    }
+
+    boolean isCoordinated() {
+        return coordinated;
+    }
+
+    /**
+     * @return true if reloaded by rebuilding the search analyzers instead of a monitor.
+     */
+    boolean isReloadAnalyzers() {
+        return reloadAnalyzers;
+    }
+
+    boolean isWatch() {
+        return watch;
+    }
+
+    /**
+     * @return the seconds between two polls of watched files, in case the file system misses events.
+     */
+    int getWatchInterval() {
+        return watchInterval;
+    }
+
+    boolean isCache() {
+        return cache;
+    }
+
+    boolean isLazy() {
+        return lazy;
+    }
+
+    boolean isWarmup() {
+        return warmup;
+    }
+
+    long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    Map<String, List<String>> getTenants() {
+        return tenants;
+    }
+
+    String getTenantMarker() {
+        return tenantMarker;
+    }
+
+    AnalysisMode getAnalysisMode() {
+        return analysisMode;
+    }
+
+    /**
+     * @return true to emit the weights of weighted outputs as boosts.
+     */
+    boolean isWeights() {
+        return weights;
+    }
+
+    /**
+     * @return true to emit the weights as payloads too.
+     */
+    boolean isWeightPayload() {
+        return weightPayload;
+    }
+
+    int getMaxOutputsPerMatch() {
+        return maxOutputsPerMatch;
+    }
+
+    boolean isOutputsByWeight() {
+        return outputsByWeight;
+    }
+
+    int getMaxExpansions() {
+        return maxExpansions;
+    }
+
+    /**
+     * @return the number of matches cached by the graph filters, 0 if disabled.
+     */
+    int getExpansionCacheSize() {
+        return expansionCacheSize;
+    }
+}
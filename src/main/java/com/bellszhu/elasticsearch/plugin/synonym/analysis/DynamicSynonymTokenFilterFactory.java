@@ -2,14 +2,18 @@ package com.bellszhu.elasticsearch.plugin.synonym.analysis;
 
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 
 import org.apache.logging.log4j.LogManager;
@@ -17,8 +21,15 @@ import org.apache.logging.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.util.BytesRefHash;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.hash.MessageDigests;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.AbstractTokenFilterFactory;
 import org.elasticsearch.index.analysis.AnalysisMode;
 import org.elasticsearch.index.analysis.CharFilterFactory;
@@ -26,6 +37,8 @@ import org.elasticsearch.index.analysis.CustomAnalyzer;
 import org.elasticsearch.index.analysis.TokenFilterFactory;
 import org.elasticsearch.index.analysis.TokenizerFactory;
 
+import com.bellszhu.elasticsearch.plugin.synonym.action.SynonymCoordinator;
+
 /**
  * @author bellszhu
  */
@@ -38,44 +51,143 @@ public class DynamicSynonymTokenFilterFactory extends
      * Static id generator
      */
     private static final AtomicInteger id = new AtomicInteger(1);
-    private static final ScheduledExecutorService pool = Executors.newScheduledThreadPool(1, r -> {
+    private static final ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(1, r -> {
         Thread thread = new Thread(r);
         thread.setName("monitor-synonym-Thread-" + id.getAndAdd(1));
         return thread;
     });
+
+    static {
+        // cancelled monitors must not keep their factory reachable until the next run
+        pool.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Let a slow source block only one of the monitor threads.
+     */
+    public static void setMonitorThreads(int threads) {
+        pool.setCorePoolSize(threads);
+    }
+
+    /**
+     * @return the number of monitors polling at their interval, on every node of the JVM.
+     */
+    public static int scheduledMonitors() {
+        return pool.getQueue().size();
+    }
+
+    private static final SynonymMap EMPTY_SYNONYM_MAP = new SynonymMap(null, new BytesRefHash(), 0);
+
     private volatile ScheduledFuture<?> scheduledFuture;
+    private volatile Monitor monitor;
+    /**
+     * Number of chain aware factories, i.e. analyzers, still using this factory
+     */
+    private final AtomicInteger refCount = new AtomicInteger();
+    /**
+     * Guards the synonym maps and sources, a lock rather than a monitor as
+     * the builds run on virtual threads when they are enabled
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Runnable reloadListener = this::scheduleReload;
 
-    private final String location;
-    private final boolean expand;
-    private final boolean lenient;
-    private final String format;
-    private final int interval;
-    protected SynonymMap synonymMap;
-    protected Map<AbsSynonymFilter, Integer> dynamicSynonymFilters = new WeakHashMap<>();
+    /**
+     * Validated settings of the filter
+     */
+    private final DynamicSynonymSettings settings;
+    /**
+     * Node the factory belongs to
+     */
+    private final SynonymRegistry registry;
+    private final int priority;
+    private final long creationDate;
+    /**
+     * Set once the last analyzer using this factory is gone
+     */
+    private volatile boolean released;
+    private final Index index;
+    /**
+     * Synonyms of each tenant, selected by the tenant of the token stream
+     */
+    private final Map<String, Tenant> tenants;
+    /**
+     * Health of each source of the monitored file, null for inline synonyms
+     */
+    private List<SourceHealth> sourceHealth = List.of();
+    /**
+     * Version and rule count of the rules the current synonym map was built from
+     */
+    private volatile SynonymVersion rulesVersion = SynonymVersion.NONE;
+    private volatile int ruleCount;
+    /**
+     * Rules served by this node, kept for the nodes pulling them if coordinated
+     */
+    private volatile String coordinatedRules;
+    /**
+     * Cleaned up rules of the last build, null if they were parsed as is
+     */
+    private volatile SynonymRules preparedRules;
+    protected volatile SynonymMap synonymMap;
+    /**
+     * Synonym map of the filter's own sources, the tenant maps are added on top
+     */
+    private SynonymMap defaultSynonymMap;
+    /**
+     * Bytes of the current synonym map charged to the breaker
+     */
+    private long synonymMapBytes;
+    /**
+     * Matches shared by the graph filters, null if disabled
+     */
+    protected final ExpansionCache expansionCache;
+    /**
+     * Set if the breaker rejected the initial build, the monitor retries it
+     */
+    private volatile boolean deferred;
+    protected SynonymFile synonymFile;
+    /**
+     * Analysis chain of the monitored source
+     */
+    private Analyzer synonymAnalyzer;
+    /**
+     * Analysis settings of the index, describing the analysis chain of precompiled synonyms
+     */
+    private final Settings analysisSettings;
+    /**
+     * Builds the synonym maps of the filter's own sources and of the tenants
+     */
+    private final SynonymMapBuilder mapBuilder;
+    /**
+     * Builds the partitioned map, null if the map is not partitioned
+     */
+    private final PartitionedSynonymBuilder partitionedBuilder;
     protected final Environment environment;
     protected final AnalysisMode analysisMode;
 
     public DynamicSynonymTokenFilterFactory(
+            IndexSettings indexSettings,
             Environment env,
             String name,
-            Settings settings
+            Settings settings,
+            SynonymRegistry registry
     ) throws IOException {
         super(name, settings);
-
-        this.location = settings.get("synonyms_path");
-        if (this.location == null) {
-            throw new IllegalArgumentException(
-                    "dynamic synonym requires `synonyms_path` to be configured");
-        }
-        if (settings.get("ignore_case") != null) {
+        this.settings = new DynamicSynonymSettings(settings);
+        this.registry = registry;
+        this.analysisSettings = indexSettings.getSettings().getByPrefix("index.analysis.");
+        this.mapBuilder = this.settings.newMapBuilder();
+        this.partitionedBuilder = this.settings.newPartitionedBuilder();
+        this.tenants = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> tenant : this.settings.getTenants().entrySet()) {
+            tenants.put(tenant.getKey(),
+                    new Tenant(tenant.getKey(), tenant.getValue(), this.settings.newPartitionedBuilder()));
         }
-
-        this.interval = settings.getAsInt("interval", 60);
-        this.expand = settings.getAsBoolean("expand", true);
-        this.lenient = settings.getAsBoolean("lenient", false);
-        this.format = settings.get("format", "");
-        boolean updateable = settings.getAsBoolean("updateable", false);
-        this.analysisMode = updateable ? AnalysisMode.SEARCH_TIME : AnalysisMode.ALL;
+        this.priority = IndexMetadata.INDEX_PRIORITY_SETTING.get(indexSettings.getSettings());
+        this.creationDate = indexSettings.getIndexMetadata().getCreationDate();
+        this.index = indexSettings.getIndex();
+        this.analysisMode = this.settings.getAnalysisMode();
+        int expansionCacheSize = this.settings.getExpansionCacheSize();
+        this.expansionCache = expansionCacheSize > 0 ? new ExpansionCache(expansionCacheSize) : null;
         this.environment = env;
     }
 
@@ -98,9 +210,9 @@ public class DynamicSynonymTokenFilterFactory extends
             Function<String, TokenFilterFactory> allFilters
     ) {
         final Analyzer analyzer = buildSynonymAnalyzer(tokenizer, charFilters, previousTokenFilters);
-        synonymMap = buildSynonyms(analyzer);
+        prepareSynonyms(analyzer);
         final String name = name();
-        return new TokenFilterFactory() {
+        return track(new TokenFilterFactory() {
             @Override
             public String name() {
                 return name;
@@ -108,14 +220,13 @@ public class DynamicSynonymTokenFilterFactory extends
 
             @Override
             public TokenStream create(TokenStream tokenStream) {
-                // fst is null means no synonyms
-                if (synonymMap.fst == null) {
+                tokenStream = markTenants(tokenStream);
+                SynonymMap synonymMap = synonyms(analyzer);
+                // fst is null means no synonyms, skip the filter unless a reload may bring some
+                if (synonymMap.fst == null && !isMonitored()) {
                     return tokenStream;
                 }
-                DynamicSynonymFilter dynamicSynonymFilter = new DynamicSynonymFilter(tokenStream, synonymMap, false);
-                dynamicSynonymFilters.put(dynamicSynonymFilter, 1);
-
-                return dynamicSynonymFilter;
+                return configure(new DynamicSynonymFilter(tokenStream, synonymMap, false));
             }
 
             @Override
@@ -130,7 +241,41 @@ public class DynamicSynonymTokenFilterFactory extends
             public AnalysisMode getAnalysisMode() {
                 return analysisMode;
             }
-        };
+        });
+    }
+
+    /**
+     * Apply the output options of this factory to a new filter, and let it
+     * pick up the current synonym map whenever it is reset.
+     */
+    <T extends AbsSynonymFilter> T configure(T filter) {
+        filter.followSynonyms(() -> synonymMap);
+        if (!tenants.isEmpty()) {
+            filter.selectTenants();
+        }
+        if (settings.isWeights()) {
+            filter.boostWeights();
+        }
+        if (settings.isWeightPayload()) {
+            filter.weightPayloads();
+        }
+        filter.limitOutputs(settings.getMaxOutputsPerMatch(), settings.isOutputsByWeight(),
+                settings.getMaxExpansions());
+        return filter;
+    }
+
+    /**
+     * @return true if the source is monitored, i.e. the synonym map may change.
+     */
+    boolean isMonitored() {
+        return monitor != null;
+    }
+
+    /**
+     * Read the tenant of the stream from its marker tokens, only if tenants are configured.
+     */
+    TokenStream markTenants(TokenStream tokenStream) {
+        return tenants.isEmpty() ? tokenStream : new TenantMarkerFilter(tokenStream, settings.getTenantMarker());
     }
 
     Analyzer buildSynonymAnalyzer(
@@ -138,16 +283,155 @@ public class DynamicSynonymTokenFilterFactory extends
             List<CharFilterFactory> charFilters,
             List<TokenFilterFactory> tokenFilters
     ) {
-        return new CustomAnalyzer(
+        SynonymChainAnalyzer.Chain chain = new SynonymChainAnalyzer.Chain();
+        for (CharFilterFactory charFilter : charFilters) {
+            describe(chain, "char_filter", charFilter.name());
+        }
+        describe(chain, "tokenizer", tokenizer.name());
+        List<TokenFilterFactory> synonymFilters = new ArrayList<>(tokenFilters.size());
+        for (TokenFilterFactory tokenFilter : tokenFilters) {
+            TokenFilterFactory synonymFilter = tokenFilter.getSynonymFilter();
+            synonymFilters.add(synonymFilter);
+            // e.g. other synonym filters, they do not change the tokens of the rules
+            if (synonymFilter != IDENTITY_FILTER) {
+                describe(chain, "filter", tokenFilter.name());
+            }
+        }
+        return new SynonymChainAnalyzer(new CustomAnalyzer(
                 tokenizer,
                 charFilters.toArray(new CharFilterFactory[0]),
-                tokenFilters.stream().map(TokenFilterFactory::getSynonymFilter).toArray(TokenFilterFactory[]::new)
-        );
+                synonymFilters.toArray(new TokenFilterFactory[0])
+        ), chain.toString());
+    }
+
+    /**
+     * Add a component by its type and settings if it is defined in the index, by its name otherwise.
+     */
+    private void describe(SynonymChainAnalyzer.Chain chain, String kind, String name) {
+        Settings component = analysisSettings.getByPrefix(kind + "." + name + ".");
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String key : component.keySet()) {
+            if (!"type".equals(key)) {
+                options.put(key, String.join(",", component.getAsList(key)));
+            }
+        }
+        chain.add(kind, component.get("type", name), options);
+    }
+
+    /**
+     * Build the synonym map for the analysis chain now, unless lazy where it is
+     * built on first use and the source is not monitored until then, or warmup
+     * where it is queued to be built in the background.
+     */
+    void prepareSynonyms(Analyzer analyzer) {
+        if (settings.isLazy()) {
+            return;
+        }
+        if (settings.isWarmup()) {
+            SynonymWarmer.submit(settings.getLocation() + " of " + index, priority, creationDate,
+                    () -> warmup(analyzer));
+            return;
+        }
+        setSynonymMap(buildSynonyms(analyzer));
+    }
+
+    /**
+     * Build the queued synonym map unless the first use already did or the index is gone.
+     */
+    private void warmup(Analyzer analyzer) {
+        lock.lock();
+        try {
+            if (!released && synonymMap == null) {
+                synonyms(analyzer);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the synonym map, built with the analysis chain of the first caller if not built yet.
+     */
+    SynonymMap synonyms(Analyzer analyzer) {
+        SynonymMap current = synonymMap;
+        if (current != null) {
+            return current;
+        }
+        lock.lock();
+        try {
+            if (released) {
+                // the index is gone, don't start a monitor for an analyzer still finishing a request
+                return EMPTY_SYNONYM_MAP;
+            }
+            if (synonymMap == null) {
+                long start = System.nanoTime();
+                try {
+                    setSynonymMap(buildSynonyms(analyzer));
+                    logger.info("built synonyms {} of {} in {}ms", settings.getLocation(), index,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                } catch (IllegalArgumentException e) {
+                    // the analyzer is in use already: rather than failing every request, each of them
+                    // building again, start without synonyms and let the monitor apply the next good rules
+                    logger.error("failed to build synonyms {} of {} on first use, start without synonyms",
+                            settings.getLocation(), index, e);
+                    setSynonymMap(EMPTY_SYNONYM_MAP);
+                }
+            }
+            return synonymMap;
+        } finally {
+            lock.unlock();
+        }
     }
 
     SynonymMap buildSynonyms(Analyzer analyzer) {
         try {
-            return getSynonymFile(analyzer).reloadSynonymMap();
+            SynonymFile file = getSynonymFile(analyzer);
+            try {
+                String rules;
+                try {
+                    rules = readRules(file.getReader());
+                } catch (Exception e) {
+                    // the monitor keeps retrying, parse errors below still fail the analyzer
+                    logger.error("failed to read synonyms from {}, start without synonyms", settings.getLocation(), e);
+                    if (file == synonymFile) {
+                        loadTenants(analyzer);
+                    }
+                    return file.reloadSynonymMap(new StringReader(""));
+                }
+                SynonymMap newSynonymMap;
+                try {
+                    newSynonymMap = parse(analyzer, rules);
+                } catch (CircuitBreakingException e) {
+                    if (file != synonymFile) {
+                        throw e;
+                    }
+                    logger.warn("not enough memory to build synonyms from {}, start without synonyms",
+                            settings.getLocation(), e);
+                    deferred = true;
+                    loadTenants(analyzer);
+                    return file.reloadSynonymMap(new StringReader(""));
+                }
+                if (file == synonymFile || !isMonitored()) {
+                    rulesVersion = rulesVersion.next(digest(rules));
+                    ruleCount = ruleCount(rules);
+                }
+                if (file == synonymFile) {
+                    loadTenants(analyzer);
+                    if (settings.isCoordinated()) {
+                        coordinatedRules = rules;
+                    }
+                    // a coordinated node catches up with the designated node right away
+                    if (isProvisional(file) || settings.isCoordinated()) {
+                        scheduleReload();
+                    }
+                }
+                return newSynonymMap;
+            } finally {
+                // only the monitored source is kept, release the resources of the others
+                if (file != synonymFile) {
+                    file.close();
+                }
+            }
         } catch (Exception e) {
             logger.error("failed to build synonyms", e);
             throw new IllegalArgumentException("failed to build synonyms", e);
@@ -156,50 +440,560 @@ public class DynamicSynonymTokenFilterFactory extends
 
     SynonymFile getSynonymFile(Analyzer analyzer) {
         try {
-            SynonymFile synonymFile;
-            if (location.startsWith("http://") || location.startsWith("https://")) {
-                synonymFile = new RemoteSynonymFile(
-                        environment, analyzer, expand, lenient,  format, location);
-            } else {
-                synonymFile = new LocalSynonymFile(
-                        environment, analyzer, expand, lenient, format, location);
+            List<SynonymFile> synonymFiles = new ArrayList<>(settings.getLocations().size() + 1);
+            for (String source : settings.getLocations()) {
+                synonymFiles.add(getSynonymFile(analyzer, source));
             }
-            if (scheduledFuture == null) {
-                scheduledFuture = pool.scheduleAtFixedRate(new Monitor(synonymFile),
-                                interval, interval, TimeUnit.SECONDS);
+            if (!settings.getSynonyms().isEmpty()) {
+                synonymFiles.add(new InlineSynonymFile(analyzer, settings.isExpand(), settings.isLenient(),
+                        settings.getFormat(), settings.getSynonyms()));
+            }
+            // inline synonyms alone never change, no need to monitor them unless tenants are configured
+            // reloaded analyzers read the sources again when they are rebuilt
+            if (monitor == null && !settings.isReloadAnalyzers()
+                    && (!settings.getLocations().isEmpty() || !tenants.isEmpty())) {
+                // the monitored file always tracks the health of every source
+                List<SourceHealth> health = acquireHealth(settings.getLocations());
+                if (!settings.getSynonyms().isEmpty()) {
+                    health.add(null);
+                }
+                SynonymFile synonymFile = new MultiSynonymFile(synonymFiles, health);
+                this.sourceHealth = health;
+                this.synonymFile = synonymFile;
+                this.synonymAnalyzer = analyzer;
+                monitor = new Monitor(synonymFile);
+                // the sources of the tenants are polled, coordinated nodes check the designated node,
+                // watched files are still polled slowly as some file systems (NFS, bind mounts) miss events
+                boolean watched = tenants.isEmpty() && !settings.isCoordinated() && watchLocalFile(synonymFile);
+                int interval = watched ? settings.getWatchInterval() : settings.getInterval();
+                scheduledFuture = pool.scheduleAtFixedRate(monitor::poll, interval, interval, TimeUnit.SECONDS);
+                return synonymFile;
             }
-            return synonymFile;
+            return synonymFiles.size() == 1 ? synonymFiles.get(0) : new MultiSynonymFile(synonymFiles);
         } catch (Exception e) {
-            logger.error("failed to get synonyms: " + location, e);
-            throw new IllegalArgumentException("failed to get synonyms : " + location, e);
+            logger.error("failed to get synonyms: " + settings.getLocation(), e);
+            throw new IllegalArgumentException("failed to get synonyms : " + settings.getLocation(), e);
+        }
+    }
+
+    private List<SourceHealth> acquireHealth(List<String> sources) {
+        List<SourceHealth> health = new ArrayList<>(sources.size() + 1);
+        for (String source : sources) {
+            health.add(SourceHealth.acquire(source, TimeUnit.SECONDS.toMillis(settings.getInterval()),
+                    settings.getMaxBackoffMillis(), settings.getFailureThreshold()));
+        }
+        return health;
+    }
+
+    /**
+     * Build the synonyms of every tenant with the analysis chain of the monitored source.
+     * A tenant whose sources can not be read starts without synonyms and is retried by the monitor.
+     */
+    private void loadTenants(Analyzer analyzer) {
+        for (Tenant tenant : tenants.values()) {
+            if (tenant.synonymFile != null) {
+                continue;
+            }
+            List<SynonymFile> synonymFiles = new ArrayList<>(tenant.locations.size());
+            for (String source : tenant.locations) {
+                synonymFiles.add(getSynonymFile(analyzer, source));
+            }
+            tenant.health = acquireHealth(tenant.locations);
+            tenant.synonymFile = new MultiSynonymFile(synonymFiles, tenant.health);
+            try {
+                String rules = readRules(tenant.synonymFile.getReader());
+                tenant.synonymMap = parse(analyzer, rules, tenant);
+                tenant.rulesVersion = tenant.rulesVersion.next(digest(rules));
+                tenant.ruleCount = ruleCount(rules);
+            } catch (Exception e) {
+                logger.error("failed to build synonyms of tenant [{}] from {}, start without them",
+                        tenant.name, tenant.location, e);
+                tenant.deferred = true;
+            }
+        }
+    }
+
+    private SynonymFile getSynonymFile(Analyzer analyzer, String source) {
+        boolean expand = settings.isExpand();
+        boolean lenient = settings.isLenient();
+        String format = settings.getFormat();
+        if (source.startsWith("http://") || source.startsWith("https://")) {
+            return new RemoteSynonymFile(
+                    environment, analyzer, expand, lenient, format, source, settings.isCache());
+        } else if (source.startsWith(IndexSynonymFile.PREFIX)) {
+            return new IndexSynonymFile(
+                    registry.getSynonymIndex(), environment, analyzer, expand, lenient, format, source, settings.isCache());
+        } else {
+            return new LocalSynonymFile(
+                    environment, analyzer, expand, lenient, format, source, settings.isWatch());
+        }
+    }
+
+    /**
+     * Watch the local files instead of polling, only if every dynamic source is a local file.
+     */
+    private boolean watchLocalFile(SynonymFile synonymFile) {
+        if (!settings.isWatch()) {
+            return false;
+        }
+        List<SynonymFile> synonymFiles = sources(synonymFile);
+        for (SynonymFile file : synonymFiles) {
+            if (!(file instanceof LocalSynonymFile) && !(file instanceof InlineSynonymFile)) {
+                return false;
+            }
+        }
+        for (SynonymFile file : synonymFiles) {
+            if (file instanceof LocalSynonymFile
+                    && !SynonymFileWatcher.watch(((LocalSynonymFile) file).getSynonymFilePath(), reloadListener)) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    /**
+     * @return true if a source started from cached or empty rules and has to be checked right away.
+     */
+    private static boolean isProvisional(SynonymFile synonymFile) {
+        for (SynonymFile file : sources(synonymFile)) {
+            if (file instanceof RemoteSynonymFile && ((RemoteSynonymFile) file).isBootedFromCache()) {
+                return true;
+            }
+            if (file instanceof IndexSynonymFile && ((IndexSynonymFile) file).isProvisional()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<SynonymFile> sources(SynonymFile synonymFile) {
+        return synonymFile instanceof MultiSynonymFile
+                ? ((MultiSynonymFile) synonymFile).getSynonymFiles() : List.of(synonymFile);
+    }
+
+    /**
+     * Count the chain aware factory as a user of this factory until its
+     * index is removed or its analyzer is garbage collected.
+     */
+    TokenFilterFactory track(TokenFilterFactory chainAwareFactory) {
+        lock.lock();
+        try {
+            if (refCount.incrementAndGet() == 1) {
+                if (released) {
+                    // the map was dropped on release, prepareSynonyms or the first use builds it
+                    // again and starts a new monitor
+                    logger.info("reusing released dynamic synonym {} of {}", settings.getLocation(), index);
+                }
+                released = false;
+                registry.register(this);
+            }
+        } finally {
+            lock.unlock();
+        }
+        registry.track(chainAwareFactory, this);
+        return chainAwareFactory;
+    }
+
+    /**
+     * Stop monitoring and drop the source once the last analyzer using this factory is gone.
+     */
+    void release() {
+        lock.lock();
+        try {
+            if (refCount.decrementAndGet() > 0) {
+                return;
+            }
+            released = true;
+            if (scheduledFuture != null) {
+                scheduledFuture.cancel(false);
+                scheduledFuture = null;
+            }
+            monitor = null;
+            registry.unregister(this);
+            if (synonymFile != null) {
+                for (SynonymFile file : sources(synonymFile)) {
+                    if (file instanceof LocalSynonymFile) {
+                        SynonymFileWatcher.unwatch(((LocalSynonymFile) file).getSynonymFilePath(), reloadListener);
+                    }
+                }
+                synonymFile.close();
+                synonymFile = null;
+                synonymAnalyzer = null;
+            }
+            for (SourceHealth health : sourceHealth) {
+                if (health != null) {
+                    health.release();
+                }
+            }
+            sourceHealth = List.of();
+            for (Tenant tenant : tenants.values()) {
+                if (tenant.synonymFile != null) {
+                    tenant.synonymFile.close();
+                    tenant.synonymFile = null;
+                }
+                for (SourceHealth health : tenant.health) {
+                    health.release();
+                }
+                tenant.health = List.of();
+                tenant.synonymMap = null;
+            }
+            SynonymMemory.adjust(-synonymMapBytes);
+            synonymMapBytes = 0;
+            // no longer charged to the breaker, a factory tracked again builds a new one
+            synonymMap = null;
+            defaultSynonymMap = null;
+            logger.info("released dynamic synonym {} of {}", settings.getLocation(), index);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the id of the filter across nodes if it is coordinated, null otherwise.
+     */
+    String getCoordinationId() {
+        return settings.isCoordinated() ? SynonymCoordinator.id(index, name()) : null;
+    }
+
+    /**
+     * @return the rules this node serves for its coordinated filter, null if they have the given hash or are unknown.
+     */
+    String getCoordinatedRules(String hash) {
+        String rules = coordinatedRules;
+        if (rules == null || rulesVersion.getHash().equals(hash)) {
+            return null;
+        }
+        return rules;
+    }
+
+    /**
+     * @return the sources of the filter and of its tenants.
+     */
+    List<String> getLocations() {
+        if (tenants.isEmpty()) {
+            return settings.getLocations();
+        }
+        List<String> all = new ArrayList<>(settings.getLocations());
+        for (Tenant tenant : tenants.values()) {
+            all.addAll(tenant.locations);
+        }
+        return all;
+    }
+
+    /**
+     * @return the current state of this factory and the health of its sources,
+     * followed by the state of each tenant named {@code filter#tenant}.
+     */
+    List<SynonymStats> stats() {
+        List<SynonymStats> stats = new ArrayList<>(tenants.size() + 1);
+        stats.add(stats(name(), settings.getLocation(), defaultSynonymMap, rulesVersion, ruleCount, preparedRules,
+                sourceHealth));
+        for (Tenant tenant : tenants.values()) {
+            stats.add(stats(name() + "#" + tenant.name, tenant.location, tenant.synonymMap,
+                    tenant.rulesVersion, tenant.ruleCount, tenant.preparedRules, tenant.health));
+        }
+        return stats;
+    }
+
+    private SynonymStats stats(String filter, String location, SynonymMap current, SynonymVersion version,
+                               int ruleCount, SynonymRules prepared, List<SourceHealth> health) {
+        List<SynonymStats.Source> sources = new ArrayList<>(health.size());
+        for (SourceHealth source : health) {
+            if (source != null) {
+                sources.add(new SynonymStats.Source(source));
+            }
+        }
+        return new SynonymStats(index.getName(), filter, location, current != null, version, ruleCount,
+                prepared == null ? ruleCount : prepared.getRuleCount(),
+                prepared == null ? 0 : prepared.getDuplicateCount(),
+                prepared == null ? -1 : prepared.getTermCount(),
+                CompactSynonymMap.wordCount(current), CompactSynonymMap.fstBytes(current), sources);
+    }
+
+    /**
+     * Check the source right away, used by sources that push change notifications.
+     */
+    void scheduleReload() {
+        Monitor current = monitor;
+        if (current != null) {
+            pool.execute(current::poll);
+        }
+    }
+
+    /**
+     * Validate the rules read from the source or pushed by the designated node,
+     * and swap them in. The current synonym map is kept if they are rejected.
+     *
+     * @return false if no monitored source exists or the rules are unchanged.
+     * @throws IllegalArgumentException if the rules are rejected or can not be parsed.
+     */
+    boolean applyRules(String rules) {
+        lock.lock();
+        try {
+            if (synonymFile == null) {
+                return false;
+            }
+            String digest = digest(rules);
+            if (digest.equals(rulesVersion.getHash())) {
+                return false;
+            }
+            int newRuleCount = settings.checkRuleCount(settings.getLocation(), ruleCount(rules), ruleCount);
+            setSynonymMap(parse(synonymAnalyzer, rules));
+            if (settings.isCoordinated()) {
+                coordinatedRules = rules;
+            }
+            deferred = false;
+            rulesVersion = rulesVersion.next(digest);
+            ruleCount = newRuleCount;
+            logger.info("applied {} synonym rules from {}, {}", newRuleCount, settings.getLocation(), rulesVersion);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Validate and swap in the rules read from the sources of a tenant.
+     *
+     * @return false if the rules are unchanged.
+     * @throws IllegalArgumentException if the rules are rejected or can not be parsed.
+     */
+    private boolean applyTenantRules(Tenant tenant, String rules) {
+        lock.lock();
+        try {
+            if (tenant.synonymFile == null) {
+                return false;
+            }
+            String digest = digest(rules);
+            if (digest.equals(tenant.rulesVersion.getHash())) {
+                return false;
+            }
+            int newRuleCount = settings.checkRuleCount(tenant.location, ruleCount(rules), tenant.ruleCount);
+            tenant.synonymMap = parse(synonymAnalyzer, rules, tenant);
+            tenant.deferred = false;
+            tenant.rulesVersion = tenant.rulesVersion.next(digest);
+            tenant.ruleCount = newRuleCount;
+            if (defaultSynonymMap != null) {
+                setSynonymMap(defaultSynonymMap);
+            }
+            logger.info("applied {} synonym rules of tenant [{}] from {}, {}", newRuleCount, tenant.name, tenant.location,
+                    tenant.rulesVersion);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the rules are a binary artifact that can not be read.
+     */
+    private int ruleCount(String rules) {
+        try {
+            return mapBuilder.ruleCount(rules);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("could not read the rule count of the synonym artifact", e);
+        }
+    }
+
+    /**
+     * Build the map of the filter's own sources, and keep its cleaned up rules.
+     */
+    private SynonymMap parse(Analyzer analyzer, String rules) {
+        SynonymMapBuilder.Build build = mapBuilder.buildCompact(rules, analyzer, partitionedBuilder,
+                settings.getLocation());
+        preparedRules = build.getPrepared();
+        return build.getSynonymMap();
+    }
+
+    private SynonymMap parse(Analyzer analyzer, String rules, Tenant tenant) {
+        SynonymMapBuilder.Build build = mapBuilder.buildCompact(rules, analyzer, tenant.partitionedBuilder,
+                tenant.location);
+        tenant.preparedRules = build.getPrepared();
+        return build.getSynonymMap();
+    }
+
+    /**
+     * Replace the default synonym map, add the current tenant maps on top and
+     * move the breaker charge to the new map.
+     */
+    private void setSynonymMap(SynonymMap newSynonymMap) {
+        lock.lock();
+        try {
+            SynonymMap composed = withTenants(newSynonymMap);
+            long bytes = SynonymMemory.ramBytesUsed(composed);
+            SynonymMemory.adjust(bytes - synonymMapBytes);
+            synonymMapBytes = bytes;
+            defaultSynonymMap = newSynonymMap;
+            synonymMap = composed;
+            if (expansionCache != null) {
+                expansionCache.swap(composed);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private SynonymMap withTenants(SynonymMap defaultMap) {
+        Map<String, SynonymMap> tenantMaps = new LinkedHashMap<>();
+        for (Tenant tenant : tenants.values()) {
+            if (tenant.synonymMap != null) {
+                tenantMaps.put(tenant.name, tenant.synonymMap);
+            }
+        }
+        return tenantMaps.isEmpty() ? defaultMap : new TenantSynonymMap(defaultMap, tenantMaps);
+    }
+
+    private static String readRules(Reader reader) throws IOException {
+        try (Reader rulesReader = reader) {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = rulesReader.read(buffer)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+            return sb.toString();
+        }
+    }
+
+    private static String digest(String rules) {
+        return MessageDigests.toHexString(MessageDigests.sha256().digest(rules.getBytes(StandardCharsets.UTF_8)));
     }
 
     public class Monitor implements Runnable {
 
         private SynonymFile synonymFile;
 
+        /**
+         * Polls requested and not run yet, a request during a run runs it once more
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+
         Monitor(SynonymFile synonymFile) {
             this.synonymFile = synonymFile;
         }
 
+        /**
+         * Run the monitor through the poller, unless a run is already queued or in progress.
+         */
+        void poll() {
+            if (pending.getAndIncrement() == 0) {
+                try {
+                    SynonymPoller.execute(this::drain, this::abort);
+                } catch (RuntimeException e) {
+                    abort();
+                    logger.warn("failed to schedule the reload of synonyms from {}", settings.getLocation(), e);
+                }
+            }
+        }
+
+        /**
+         * Nothing runs the requested polls, let the next one schedule a run again.
+         */
+        private void abort() {
+            pending.set(0);
+        }
+
+        private void drain() {
+            int requested;
+            do {
+                requested = pending.get();
+                run();
+            } while (pending.addAndGet(-requested) > 0);
+        }
+
+        /**
+         * Not synchronized, the runs are serialized by {@link #poll()} and the state
+         * they change is guarded by the factory lock, so a poll on a virtual thread
+         * never pins its carrier while it reads the source.
+         */
         @Override
         public void run() {
-            try {
-                logger.info("===== Monitor =======");
-                if (synonymFile.isNeedReloadSynonymMap()) {
-                    synonymMap = synonymFile.reloadSynonymMap();
-                    for (AbsSynonymFilter dynamicSynonymFilter : dynamicSynonymFilters.keySet()) {
-                        dynamicSynonymFilter.update(synonymMap);
-                        logger.debug("success reload synonym");
+            logger.info("===== Monitor =======");
+            // followers take the rules of the designated node, tenants are not coordinated
+            if (!settings.isCoordinated() || registry.getCoordinator().isDesignatedNode(index)) {
+                try {
+                    // a build deferred by the breaker is retried even if the source did not change
+                    if (deferred || synonymFile.isNeedReloadSynonymMap()) {
+                        String rules = readRules(synonymFile.getReader());
+                        // validated on this node before distributing to the others
+                        if (applyRules(rules) && settings.isCoordinated()) {
+                            registry.getCoordinator().push(getCoordinationId(), rules);
+                        }
+                    }
+                } catch (Exception e) {
+                    logger.warn("failed to reload synonyms from {}, keep serving the last good synonyms",
+                            settings.getLocation(), e);
+                }
+            } else {
+                try {
+                    // catch up with a push this node missed, e.g. while it was starting,
+                    // without holding a monitor thread while the designated node answers
+                    registry.getCoordinator().pull(index, getCoordinationId(), rulesVersion.getHash(),
+                            ActionListener.wrap(rules -> {
+                                if (rules != null) {
+                                    pool.execute(() -> applyPulledRules(rules));
+                                }
+                            }, this::pullFailed));
+                } catch (Exception e) {
+                    pullFailed(e);
+                }
+            }
+            for (Tenant tenant : tenants.values()) {
+                try {
+                    SynonymFile tenantFile = tenant.synonymFile;
+                    if (tenantFile != null && (tenant.deferred || tenantFile.isNeedReloadSynonymMap())) {
+                        applyTenantRules(tenant, readRules(tenantFile.getReader()));
                     }
+                } catch (Exception e) {
+                    logger.warn("failed to reload synonyms of tenant [{}] from {}, keep serving the last good synonyms",
+                            tenant.name, tenant.location, e);
+                }
+            }
+        }
+
+        /**
+         * Parse the rules on a monitor thread rather than on the thread delivering the response.
+         */
+        private void applyPulledRules(String rules) {
+            try {
+                if (applyRules(rules)) {
+                    logger.info("caught up with the synonyms of the designated node for {}", settings.getLocation());
                 }
             } catch (Exception e) {
-                logger.info("Monitor error", e);
-//                e.printStackTrace();
-                logger.error(e);
+                logger.warn("failed to apply the synonyms of the designated node for {}, keep serving the last good synonyms",
+                        settings.getLocation(), e);
             }
         }
+
+        private void pullFailed(Exception e) {
+            logger.warn("failed to pull synonyms from the designated node for {}, keep serving the last good synonyms",
+                    settings.getLocation(), e);
+        }
+    }
+
+    /**
+     * Sources and current synonym map of a tenant, guarded by the factory lock.
+     */
+    private static final class Tenant {
+
+        private final String name;
+        private final List<String> locations;
+        private final String location;
+        private final PartitionedSynonymBuilder partitionedBuilder;
+        private SynonymFile synonymFile;
+        private List<SourceHealth> health = List.of();
+        private volatile SynonymVersion rulesVersion = SynonymVersion.NONE;
+        private int ruleCount;
+        private SynonymRules preparedRules;
+        private boolean deferred;
+        private volatile SynonymMap synonymMap;
+
+        Tenant(String name, List<String> locations, PartitionedSynonymBuilder partitionedBuilder) {
+            this.name = name;
+            this.locations = locations;
+            this.location = String.join(",", locations);
+            this.partitionedBuilder = partitionedBuilder;
+        }
     }
 
 }
@@ -0,0 +1,144 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.util.Objects;
+
+import org.apache.lucene.analysis.synonym.SynonymMap;
+
+/**
+ * Bounded cache of the matches of the graph filters of a factory, from the
+ * input tokens a match examined to its output, so that frequent queries skip
+ * the FST matching.
+ * <p>
+ * Entries are immutable and only hold the generation of the map they were
+ * matched in, never the map: swapping in a new map increases the generation
+ * and every older entry simply stops matching. The cache is direct mapped by
+ * the first token and the tenant, without locks, a lookup compares chars and
+ * allocates nothing, only a miss allocates the entry that replaces its slot.
+ *
+ * @author bellszhu
+ */
+final class ExpansionCache {
+
+    /**
+     * Generation of the filters whose map is not the current one, they do not use the cache
+     */
+    static final long NONE = -1;
+
+    /**
+     * Immutable, so entries are safely published through the plain array
+     */
+    private final Entry[] entries;
+    private final int mask;
+
+    private SynonymMap current;
+    private long generation;
+
+    ExpansionCache(int size) {
+        int slots = size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+        this.entries = new Entry[slots];
+        this.mask = slots - 1;
+    }
+
+    /**
+     * Make the given map the current one, the entries of the former map no longer match.
+     */
+    synchronized void swap(SynonymMap synonymMap) {
+        current = synonymMap;
+        generation++;
+    }
+
+    /**
+     * @return the generation to look up and add the matches of the given map
+     * with, {@link #NONE} if the map has been replaced.
+     */
+    synchronized long generation(SynonymMap synonymMap) {
+        return synonymMap == current ? generation : NONE;
+    }
+
+    int size() {
+        return entries.length;
+    }
+
+    /**
+     * @return the entry of the matching starting with the given token, null if none is cached.
+     * The following tokens still have to be compared with {@link Entry#tokenEquals}.
+     */
+    Entry get(long generation, String tenant, char[] token, int length) {
+        Entry entry = entries[slot(tenant, token, length)];
+        if (entry != null && entry.generation == generation && Objects.equals(entry.tenant, tenant)
+                && entry.tokenEquals(0, token, length)) {
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Add a matching, replacing the one cached for its first token.
+     *
+     * @param tokens the chars of the examined tokens, one after the other.
+     * @param ends   the end of each token in {@code tokens}.
+     * @param output the output of the match, null if nothing matched.
+     */
+    void put(long generation, String tenant, char[] tokens, int[] ends, byte[] output, int inputLength) {
+        Entry entry = new Entry(generation, tenant, tokens, ends, output, inputLength);
+        entries[slot(tenant, tokens, ends[0])] = entry;
+    }
+
+    private int slot(String tenant, char[] token, int length) {
+        int hash = tenant == null ? 0 : tenant.hashCode();
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + token[i];
+        }
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    static final class Entry {
+
+        private final long generation;
+        private final String tenant;
+        private final char[] tokens;
+        private final int[] ends;
+        private final byte[] output;
+        private final int inputLength;
+
+        private Entry(long generation, String tenant, char[] tokens, int[] ends, byte[] output, int inputLength) {
+            this.generation = generation;
+            this.tenant = tenant;
+            this.tokens = tokens;
+            this.ends = ends;
+            this.output = output;
+            this.inputLength = inputLength;
+        }
+
+        /**
+         * @return the number of input tokens the FST was walked over.
+         */
+        int examined() {
+            return ends.length;
+        }
+
+        boolean tokenEquals(int index, char[] token, int length) {
+            int start = index == 0 ? 0 : ends[index - 1];
+            if (ends[index] - start != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (tokens[start + i] != token[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the output of the match, null if nothing matched.
+         */
+        byte[] output() {
+            return output;
+        }
+
+        int inputLength() {
+            return inputLength;
+        }
+    }
+}
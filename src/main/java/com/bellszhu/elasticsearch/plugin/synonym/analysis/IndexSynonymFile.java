@@ -0,0 +1,169 @@
+/**
+ *
+ */
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.seqno.SequenceNumbers;
+
+/**
+ * Synonym rules stored as a document of the {@link SynonymIndex} system index.
+ * <p>
+ * The document is never read while an analyzer is built, which may happen on
+ * the cluster applier thread. It is read asynchronously, or taken from a write
+ * on the local copy, and the rules start from the disk cache, if enabled, or
+ * empty until it arrives.
+ *
+ * @author bellszhu
+ */
+public class IndexSynonymFile implements SynonymFile {
+
+    static final String PREFIX = "index://";
+
+    private static final Logger logger = LogManager.getLogger("dynamic-synonym");
+
+    private String format;
+
+    private boolean expand;
+
+    private boolean lenient;
+
+    private Analyzer analyzer;
+
+    /**
+     * Location in the form of index://{document id}
+     */
+    private String location;
+
+    private String id;
+
+    private final SynonymIndex synonymIndex;
+
+    private long seqNo = SequenceNumbers.UNASSIGNED_SEQ_NO;
+
+    private long primaryTerm = SequenceNumbers.UNASSIGNED_PRIMARY_TERM;
+
+    /**
+     * Set once the rules come from a read of the document, even if it does not exist
+     */
+    private boolean loaded;
+
+    /**
+     * Disk copy of the last read rules, null if disabled
+     */
+    private SynonymCache cache;
+
+    private final AtomicBoolean loading = new AtomicBoolean();
+
+    /**
+     * Failure of the last read, reported by the next check
+     */
+    private volatile Exception failure;
+
+    IndexSynonymFile(SynonymIndex synonymIndex, Environment env, Analyzer analyzer, boolean expand, boolean lenient,
+                     String format, String location, boolean cache) {
+        this.synonymIndex = synonymIndex;
+        this.analyzer = analyzer;
+        this.expand = expand;
+        this.lenient = lenient;
+        this.format = format;
+        this.location = location;
+        this.id = location.substring(PREFIX.length());
+        this.cache = cache ? SynonymCache.of(env, location) : null;
+        if (synonymIndex.document(id) == null) {
+            load();
+        }
+    }
+
+    @Override
+    public SynonymMap reloadSynonymMap() {
+        logger.debug("start reload index synonym from {}.", location);
+        return reloadSynonymMap(getReader());
+    }
+
+    @Override
+    public SynonymMap reloadSynonymMap(Reader rulesReader) {
+        try {
+            return RemoteSynonymFile.buildSynonymMap(
+                    rulesReader, format, expand, lenient, analyzer);
+        } catch (Exception e) {
+            logger.error("reload index synonym {} error!", location, e);
+            throw new IllegalArgumentException(
+                    "could not reload index synonyms to build synonyms", e);
+        }
+    }
+
+    /**
+     * Compare the last known document with the one read last, without reading it.
+     * A read is started if it is not known yet, its arrival notifies the monitor.
+     *
+     * @throws IllegalStateException if the last read failed, so that the caller can back off.
+     */
+    @Override
+    public boolean isNeedReloadSynonymMap() {
+        Exception e = failure;
+        if (e != null) {
+            failure = null;
+            throw new IllegalStateException("failed to check synonyms at " + location, e);
+        }
+        SynonymIndex.Document document = synonymIndex.document(id);
+        if (document == null) {
+            load();
+            return false;
+        }
+        return document.seqNo != seqNo || document.primaryTerm != primaryTerm;
+    }
+
+    /**
+     * The rules of the last known document, the cached or no rules while it has not arrived yet.
+     */
+    @Override
+    public Reader getReader() {
+        SynonymIndex.Document document = synonymIndex.document(id);
+        if (document == null) {
+            load();
+            SynonymCache.Entry entry = cache == null ? null : cache.load();
+            if (entry != null) {
+                logger.info("start index synonym {} from the cached rules", location);
+                return new StringReader(entry.rules);
+            }
+            logger.info("start index synonym {} without rules until the document is read", location);
+            return new StringReader("");
+        }
+        if (cache != null && (document.seqNo != seqNo || document.primaryTerm != primaryTerm)) {
+            cache.store(document.rules, null, null);
+        }
+        seqNo = document.seqNo;
+        primaryTerm = document.primaryTerm;
+        loaded = true;
+        return new StringReader(document.rules);
+    }
+
+    /**
+     * @return true if the rules were not read from the document yet and still need to be checked,
+     * false once read, also if the document does not exist.
+     */
+    boolean isProvisional() {
+        return !loaded;
+    }
+
+    private void load() {
+        if (!loading.compareAndSet(false, true)) {
+            return;
+        }
+        synonymIndex.load(id, ActionListener.wrap(document -> loading.set(false), e -> {
+            logger.warn("failed to read synonyms from {}", location, e);
+            failure = e;
+            loading.set(false);
+        }));
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ *
+ */
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+
+/**
+ * Rules given inline by the `synonyms` setting, they never change.
+ *
+ * @author bellszhu
+ */
+public class InlineSynonymFile implements SynonymFile {
+
+    private static final Logger logger = LogManager.getLogger("dynamic-synonym");
+
+    private String format;
+
+    private boolean expand;
+
+    private boolean lenient;
+
+    private Analyzer analyzer;
+
+    private String rules;
+
+    InlineSynonymFile(Analyzer analyzer, boolean expand, boolean lenient,
+                      String format, List<String> synonyms) {
+        this.analyzer = analyzer;
+        this.expand = expand;
+        this.lenient = lenient;
+        this.format = format;
+        this.rules = String.join(System.getProperty("line.separator"), synonyms);
+    }
+
+    @Override
+    public SynonymMap reloadSynonymMap() {
+        return reloadSynonymMap(getReader());
+    }
+
+    @Override
+    public SynonymMap reloadSynonymMap(Reader rulesReader) {
+        try {
+            return RemoteSynonymFile.buildSynonymMap(
+                    rulesReader, format, expand, lenient, analyzer);
+        } catch (Exception e) {
+            logger.error("build inline synonyms error!", e);
+            throw new IllegalArgumentException(
+                    "could not parse inline synonyms to build synonyms", e);
+        }
+    }
+
+    @Override
+    public boolean isNeedReloadSynonymMap() {
+        return false;
+    }
+
+    @Override
+    public Reader getReader() {
+        return new StringReader(rules);
+    }
+}
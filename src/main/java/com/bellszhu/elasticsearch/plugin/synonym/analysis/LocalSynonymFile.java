@@ -4,19 +4,21 @@
 package com.bellszhu.elasticsearch.plugin.synonym.analysis;
 
 import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.elasticsearch.common.hash.MessageDigests;
 import org.elasticsearch.env.Environment;
 
 
@@ -44,16 +46,34 @@ public class LocalSynonymFile implements SynonymFile {
 
     private Path synonymFilePath;
 
-    private long lastModified;
+    private FileTime lastModified;
+
+    private long size;
+
+    /**
+     * SHA-256 of the content the current synonym map was built from
+     */
+    private String digest;
+
+    /**
+     * True if the file is checked on watch service events instead of every interval
+     */
+    private boolean watched;
 
     LocalSynonymFile(Environment env, Analyzer analyzer, boolean expand, boolean lenient,
                      String format, String location) {
+        this(env, analyzer, expand, lenient, format, location, false);
+    }
+
+    LocalSynonymFile(Environment env, Analyzer analyzer, boolean expand, boolean lenient,
+                     String format, String location, boolean watched) {
         this.analyzer = analyzer;
         this.expand = expand;
         this.lenient = lenient;
         this.format = format;
         this.env = env;
         this.location = location;
+        this.watched = watched;
 
         this.synonymFilePath = deepSearch();
         isNeedReloadSynonymMap();
@@ -61,12 +81,15 @@ public class LocalSynonymFile implements SynonymFile {
 
     @Override
     public SynonymMap reloadSynonymMap() {
+        logger.debug("start reload local synonym from {}.", synonymFilePath);
+        return reloadSynonymMap(getReader());
+    }
+
+    @Override
+    public SynonymMap reloadSynonymMap(Reader rulesReader) {
         try {
-            logger.debug("start reload local synonym from {}.", synonymFilePath);
-            Reader rulesReader = getReader();
-            SynonymMap.Builder parser = RemoteSynonymFile.getSynonymParser(
+            return RemoteSynonymFile.buildSynonymMap(
                     rulesReader, format, expand, lenient, analyzer);
-            return parser.build();
         } catch (Exception e) {
             logger.error("reload local synonym {} error!", synonymFilePath, e);
             throw new IllegalArgumentException(
@@ -95,10 +118,9 @@ public class LocalSynonymFile implements SynonymFile {
             return new StringReader(sb.toString());
         } catch (IOException e) {
             logger.error("get local synonym reader {} error!", location, e);
-//            throw new IllegalArgumentException(
-//                    "IOException while reading local synonyms file", e);
-//            Fix #54 Returns blank if synonym file has be deleted.
-            return new StringReader("");
+            // forget the digest so that the next check reads again
+            digest = null;
+            throw new UncheckedIOException("failed to read local synonyms file " + synonymFilePath, e);
         }
     }
 
@@ -112,10 +134,22 @@ public class LocalSynonymFile implements SynonymFile {
             if (!Files.exists(synonymFilePath) && !Files.exists(synonymFilePath = deepSearch())) {
                 return false;
             }
-            File synonymFile = synonymFilePath.toFile();
-            if (synonymFile.exists()
-                    && lastModified < synonymFile.lastModified()) {
-                lastModified = synonymFile.lastModified();
+            FileTime modified = Files.getLastModifiedTime(synonymFilePath);
+            long fileSize = Files.size(synonymFilePath);
+            /*
+            A watched file is only checked when an event arrives, which may be
+              within the timestamp granularity of the previous write.
+             */
+            if (!watched && modified.equals(lastModified) && fileSize == size) {
+                return false;
+            }
+            lastModified = modified;
+            size = fileSize;
+            // touching the file or rewriting the same rules must not rebuild the map
+            String fileDigest = MessageDigests.toHexString(
+                    MessageDigests.sha256().digest(Files.readAllBytes(synonymFilePath)));
+            if (!fileDigest.equals(digest)) {
+                digest = fileDigest;
                 return true;
             }
         } catch (Exception e) {
@@ -125,6 +159,10 @@ public class LocalSynonymFile implements SynonymFile {
         return false;
     }
 
+    Path getSynonymFilePath() {
+        return synonymFilePath;
+    }
+
     /**
      * Deep search synonym file.
      * Step 1. Query the 'sysnonym_path' parameter as an absolute path
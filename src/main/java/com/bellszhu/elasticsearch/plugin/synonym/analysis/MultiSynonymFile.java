@@ -0,0 +1,179 @@
+/**
+ *
+ */
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+
+/**
+ * Merges several synonym sources into a single synonym map.
+ * <p>
+ * Every source keeps its own change tracking and the rules of unchanged
+ * sources are kept in memory, so a reload only reads the changed sources.
+ * <p>
+ * Sources given a {@link SourceHealth} are isolated from each other: a failing
+ * source is skipped until its backoff expires and keeps contributing its last
+ * rules, so it neither blocks nor drops the rules of the healthy sources.
+ *
+ * @author bellszhu
+ */
+public class MultiSynonymFile implements SynonymFile {
+
+    private static final Logger logger = LogManager.getLogger("dynamic-synonym");
+
+    private final List<SynonymFile> synonymFiles;
+
+    /**
+     * Health of each source, null for sources that never fail or when failures are not tracked
+     */
+    private final List<SourceHealth> health;
+
+    /**
+     * Last rules read from each source, null until the source has been read
+     */
+    private final String[] rules;
+
+    /**
+     * Sources that changed or failed to be read and must be read again
+     */
+    private final boolean[] pending;
+
+    /**
+     * Sources allowed to be read by the next {@link #getReader()}
+     */
+    private final boolean[] due;
+
+    MultiSynonymFile(List<SynonymFile> synonymFiles) {
+        this(synonymFiles, null);
+    }
+
+    MultiSynonymFile(List<SynonymFile> synonymFiles, List<SourceHealth> health) {
+        this.synonymFiles = synonymFiles;
+        this.health = health;
+        this.rules = new String[synonymFiles.size()];
+        this.pending = new boolean[synonymFiles.size()];
+        this.due = new boolean[synonymFiles.size()];
+        Arrays.fill(pending, true);
+        Arrays.fill(due, true);
+    }
+
+    List<SynonymFile> getSynonymFiles() {
+        return synonymFiles;
+    }
+
+    @Override
+    public SynonymMap reloadSynonymMap() {
+        return reloadSynonymMap(getReader());
+    }
+
+    @Override
+    public SynonymMap reloadSynonymMap(Reader rulesReader) {
+        // all sources share the analysis chain and the parser settings
+        return synonymFiles.get(0).reloadSynonymMap(rulesReader);
+    }
+
+    @Override
+    public boolean isNeedReloadSynonymMap() {
+        boolean needReload = false;
+        long now = System.currentTimeMillis();
+        // every source is checked so that each one records its own state
+        for (int i = 0; i < synonymFiles.size(); i++) {
+            SourceHealth sourceHealth = health(i);
+            due[i] = sourceHealth == null || sourceHealth.tryAttempt(now);
+            if (!due[i]) {
+                continue;
+            }
+            // a source that failed to be read is retried without checking it first
+            if (!pending[i]) {
+                try {
+                    pending[i] = synonymFiles.get(i).isNeedReloadSynonymMap();
+                    if (!pending[i] && sourceHealth != null) {
+                        sourceHealth.onSuccess();
+                    }
+                } catch (RuntimeException e) {
+                    if (sourceHealth == null) {
+                        throw e;
+                    }
+                    failed(i, sourceHealth, now, e);
+                    continue;
+                }
+            }
+            needReload |= pending[i];
+        }
+        return needReload;
+    }
+
+    /**
+     * Concatenate the rules of all sources, re-reading only the changed ones.
+     * A tracked source that fails keeps its last rules and is retried after its backoff.
+     */
+    @Override
+    public Reader getReader() {
+        StringBuilder sb = new StringBuilder();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < synonymFiles.size(); i++) {
+            if (pending[i] && due[i]) {
+                SourceHealth sourceHealth = health(i);
+                try {
+                    rules[i] = read(synonymFiles.get(i).getReader());
+                    pending[i] = false;
+                    if (sourceHealth != null) {
+                        sourceHealth.onSuccess();
+                    }
+                } catch (RuntimeException e) {
+                    if (sourceHealth == null) {
+                        throw e;
+                    }
+                    failed(i, sourceHealth, now, e);
+                }
+            }
+            due[i] = false;
+            if (rules[i] != null) {
+                sb.append(rules[i]).append(System.getProperty("line.separator"));
+            }
+        }
+        return new StringReader(sb.toString());
+    }
+
+    private SourceHealth health(int i) {
+        return health == null ? null : health.get(i);
+    }
+
+    private void failed(int i, SourceHealth sourceHealth, long now, Exception e) {
+        sourceHealth.onFailure(now, e);
+        due[i] = false;
+        logger.warn("synonym source {} failed {} times in a row, retry after {}ms",
+                sourceHealth.getLocation(), sourceHealth.getConsecutiveFailures(),
+                sourceHealth.getNextAttemptMillis() - now, e);
+    }
+
+    @Override
+    public void close() {
+        for (SynonymFile synonymFile : synonymFiles) {
+            synonymFile.close();
+        }
+    }
+
+    private static String read(Reader reader) {
+        try (Reader rulesReader = reader) {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = rulesReader.read(buffer)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+            return sb.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read synonym rules", e);
+        }
+    }
+}
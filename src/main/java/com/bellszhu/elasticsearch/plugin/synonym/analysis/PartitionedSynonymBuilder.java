@@ -0,0 +1,122 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.text.ParseException;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.util.CharsRef;
+import org.elasticsearch.analysis.common.ESWordnetSynonymParser;
+import org.elasticsearch.common.hash.MessageDigests;
+
+/**
+ * Builds a {@link PartitionedSynonymMap}. The rules are parsed once, each
+ * parsed rule is routed to the builder of its partition, and only the
+ * partitions whose rules changed since the previous build are compiled again.
+ * They are compiled one after the other on the thread of the reload, a monitor
+ * thread, so a reload never takes threads from the node.
+ *
+ * @author bellszhu
+ */
+final class PartitionedSynonymBuilder {
+
+    private static final Logger logger = LogManager.getLogger("dynamic-synonym");
+
+    private final int partitions;
+    private final String format;
+    private final boolean expand;
+    private final boolean lenient;
+
+    /**
+     * Previous build, only reused for the same analysis chain
+     */
+    private Analyzer analyzer;
+    private String[] digests;
+    private SynonymMap[] maps;
+
+    PartitionedSynonymBuilder(int partitions, String format, boolean expand, boolean lenient) {
+        this.partitions = partitions;
+        this.format = format;
+        this.expand = expand;
+        this.lenient = lenient;
+    }
+
+    synchronized SynonymMap build(Reader rulesReader, Analyzer analyzer, String location)
+            throws IOException, ParseException {
+        SynonymMap.Builder[] builders = new SynonymMap.Builder[partitions];
+        MessageDigest[] hashes = new MessageDigest[partitions];
+        for (int i = 0; i < partitions; i++) {
+            builders[i] = new SynonymMap.Builder(true);
+            hashes[i] = MessageDigests.sha256();
+        }
+        parse(rulesReader, analyzer, (input, output, includeOrig) -> {
+            int partition = PartitionedSynonymMap.partition(input, partitions);
+            builders[partition].add(input, output, includeOrig);
+            update(hashes[partition], input);
+            update(hashes[partition], output);
+            hashes[partition].update((byte) (includeOrig ? 1 : 0));
+        });
+
+        boolean reuse = analyzer == this.analyzer && maps != null;
+        String[] newDigests = new String[partitions];
+        SynonymMap[] newMaps = new SynonymMap[partitions];
+        int rebuilt = 0;
+        for (int i = 0; i < partitions; i++) {
+            newDigests[i] = MessageDigests.toHexString(hashes[i].digest());
+            if (reuse && newDigests[i].equals(digests[i])) {
+                newMaps[i] = maps[i];
+            } else {
+                newMaps[i] = CompactSynonymMap.compact(builders[i].build());
+                rebuilt++;
+            }
+        }
+        this.analyzer = analyzer;
+        this.digests = newDigests;
+        this.maps = newMaps;
+        logger.info("rebuilt {} of {} synonym partitions of {}", rebuilt, partitions, location);
+        return new PartitionedSynonymMap(Arrays.copyOf(newMaps, partitions));
+    }
+
+    private void parse(Reader rulesReader, Analyzer analyzer, Router router) throws IOException, ParseException {
+        if ("wordnet".equalsIgnoreCase(format)) {
+            new ESWordnetSynonymParser(true, expand, lenient, analyzer) {
+                @Override
+                public void add(CharsRef input, CharsRef output, boolean includeOrig) {
+                    route(router, input, output, includeOrig);
+                }
+            }.parse(rulesReader);
+        } else {
+            new WeightedSynonymParser(true, expand, lenient, analyzer) {
+                @Override
+                public void add(CharsRef input, CharsRef output, boolean includeOrig) {
+                    route(router, input, weighted(output), includeOrig);
+                }
+            }.parse(rulesReader);
+        }
+    }
+
+    /**
+     * Same as the ES parsers, lenient parsing drops the rules that analyzed to nothing.
+     */
+    private void route(Router router, CharsRef input, CharsRef output, boolean includeOrig) {
+        if (!lenient || (input.length > 0 && output.length > 0)) {
+            router.add(input, output, includeOrig);
+        }
+    }
+
+    private static void update(MessageDigest hash, CharsRef chars) {
+        hash.update(chars.toString().getBytes(StandardCharsets.UTF_8));
+        hash.update((byte) 0);
+    }
+
+    @FunctionalInterface
+    private interface Router {
+        void add(CharsRef input, CharsRef output, boolean includeOrig);
+    }
+}
@@ -0,0 +1,68 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.fst.FST;
+
+/**
+ * Synonym map split into partitions by the hash of the first token of the rule
+ * inputs. The filters look up the partition of the first token of each match,
+ * so each partition can be built, and reused when unchanged, on its own.
+ *
+ * @author bellszhu
+ */
+final class PartitionedSynonymMap extends SynonymMap {
+
+    private final SynonymMap[] partitions;
+
+    PartitionedSynonymMap(SynonymMap[] partitions) {
+        // any partition FST tells the filters that the map is not empty
+        super(firstFst(partitions), new BytesRefHash(), maxHorizontalContext(partitions));
+        this.partitions = partitions;
+    }
+
+    SynonymMap[] getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * @return the partition of the rules whose input starts with the given token.
+     */
+    static int partition(char[] token, int offset, int length, int partitions) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + token[i];
+        }
+        return Math.floorMod(hash, partitions);
+    }
+
+    /**
+     * @return the partition of a rule input, words separated by {@link SynonymMap#WORD_SEPARATOR}.
+     */
+    static int partition(CharsRef input, int partitions) {
+        int end = input.offset;
+        while (end < input.offset + input.length && input.chars[end] != SynonymMap.WORD_SEPARATOR) {
+            end++;
+        }
+        return partition(input.chars, input.offset, end - input.offset, partitions);
+    }
+
+    private static FST<BytesRef> firstFst(SynonymMap[] partitions) {
+        for (SynonymMap partition : partitions) {
+            if (partition.fst != null) {
+                return partition.fst;
+            }
+        }
+        return null;
+    }
+
+    private static int maxHorizontalContext(SynonymMap[] partitions) {
+        int max = 0;
+        for (SynonymMap partition : partitions) {
+            max = Math.max(max, partition.maxHorizontalContext);
+        }
+        return max;
+    }
+}
@@ -18,12 +18,12 @@ import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.message.StatusLine;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.synonym.SynonymMap;
-import org.elasticsearch.analysis.common.ESSolrSynonymParser;
 import org.elasticsearch.analysis.common.ESWordnetSynonymParser;
 import org.elasticsearch.env.Environment;
 
@@ -58,8 +58,25 @@ public class RemoteSynonymFile implements SynonymFile {
 
     private String eTags;
 
+    /**
+     * Disk copy of the last downloaded rules, null if disabled
+     */
+    private SynonymCache cache;
+
+    /**
+     * Cached rules served by the first read instead of downloading them
+     */
+    private String cachedRules;
+
+    private boolean bootedFromCache;
+
     RemoteSynonymFile(Environment env, Analyzer analyzer,
                       boolean expand, boolean lenient, String format, String location) {
+        this(env, analyzer, expand, lenient, format, location, false);
+    }
+
+    RemoteSynonymFile(Environment env, Analyzer analyzer, boolean expand, boolean lenient,
+                      String format, String location, boolean cache) {
         this.analyzer = analyzer;
         this.expand = expand;
         this.lenient = lenient;
@@ -69,10 +86,36 @@ public class RemoteSynonymFile implements SynonymFile {
 
         this.httpclient = HttpClients.createDefault();
 
-        isNeedReloadSynonymMap();
+        this.cache = cache ? SynonymCache.of(env, location) : null;
+        SynonymCache.Entry entry = this.cache == null ? null : this.cache.load();
+        if (entry != null) {
+            // start from the cached rules, the monitor revalidates them in the background
+            cachedRules = entry.rules;
+            lastModified = entry.lastModified;
+            eTags = entry.eTag;
+            return;
+        }
+        try {
+            isNeedReloadSynonymMap();
+        } catch (IllegalStateException e) {
+            // the validators stay unset, the source is downloaded on first read
+            logger.warn("failed to check remote synonym {}", location, e);
+        }
     }
 
-    static SynonymMap.Builder getSynonymParser(
+    /**
+     * Parse the rules, or load them directly if they are a precompiled {@link SynonymArtifact}.
+     */
+    static SynonymMap buildSynonymMap(
+            Reader rulesReader, String format, boolean expand, boolean lenient, Analyzer analyzer
+    ) throws IOException, ParseException {
+        if (SynonymArtifact.isBinary(format)) {
+            return SynonymArtifact.read(rulesReader, analyzer);
+        }
+        return getSynonymParser(rulesReader, format, expand, lenient, analyzer).build();
+    }
+
+    public static SynonymMap.Builder getSynonymParser(
             Reader rulesReader, String format, boolean expand, boolean lenient, Analyzer analyzer
     ) throws IOException, ParseException {
         SynonymMap.Builder parser;
@@ -80,22 +123,22 @@ public class RemoteSynonymFile implements SynonymFile {
             parser = new ESWordnetSynonymParser(true, expand, lenient, analyzer);
             ((ESWordnetSynonymParser) parser).parse(rulesReader);
         } else {
-            parser = new ESSolrSynonymParser(true, expand, lenient, analyzer);
-            ((ESSolrSynonymParser) parser).parse(rulesReader);
+            parser = new WeightedSynonymParser(true, expand, lenient, analyzer);
+            ((WeightedSynonymParser) parser).parse(rulesReader);
         }
         return parser;
     }
 
     @Override
     public SynonymMap reloadSynonymMap() {
-        Reader rulesReader = null;
-        try {
-            logger.debug("start reload remote synonym from {}.", location);
-            rulesReader = getReader();
-            SynonymMap.Builder parser;
+        logger.debug("start reload remote synonym from {}.", location);
+        return reloadSynonymMap(getReader());
+    }
 
-            parser = getSynonymParser(rulesReader, format, expand, lenient, analyzer);
-            return parser.build();
+    @Override
+    public SynonymMap reloadSynonymMap(Reader rulesReader) {
+        try {
+            return buildSynonymMap(rulesReader, format, expand, lenient, analyzer);
         } catch (Exception e) {
             logger.error("reload remote synonym {} error!", location, e);
             throw new IllegalArgumentException(
@@ -112,19 +155,37 @@ public class RemoteSynonymFile implements SynonymFile {
         }
     }
 
-    private CloseableHttpResponse executeHttpRequest(HttpUriRequest httpUriRequest) {
+    /**
+     * @return true if the rules were read from the disk cache and still need to be revalidated.
+     */
+    boolean isBootedFromCache() {
+        return bootedFromCache;
+    }
+
+    @Override
+    public void close() {
         try {
-            return httpclient.execute(httpUriRequest);
+            httpclient.close();
         } catch (IOException e) {
-            logger.error("Unable to execute HTTP request.", e);
+            logger.error("failed to close http client", e);
         }
-        return null;
+    }
+
+    private CloseableHttpResponse executeHttpRequest(HttpUriRequest httpUriRequest) throws IOException {
+        return httpclient.execute(httpUriRequest);
     }
 
     /**
      * Download custom terms from a remote server
      */
     public Reader getReader() {
+        if (cachedRules != null) {
+            Reader cached = new StringReader(cachedRules);
+            cachedRules = null;
+            bootedFromCache = true;
+            logger.info("start remote synonym {} from the cached rules", location);
+            return cached;
+        }
         Reader reader;
         RequestConfig rc = RequestConfig.custom()
                 .setConnectionRequestTimeout(10 * 1000, TimeUnit.MILLISECONDS)
@@ -136,7 +197,9 @@ public class RemoteSynonymFile implements SynonymFile {
         get.setConfig(rc);
         try {
             response = executeHttpRequest(get);
-            assert response != null;
+            if (response == null) {
+                throw new IOException("no response from " + location);
+            }
             StatusLine statusLine = new StatusLine(response);
             if (statusLine.getStatusCode() == 200) {
                 String charset = "UTF-8"; // 获取编码，默认为utf-8
@@ -156,13 +219,26 @@ public class RemoteSynonymFile implements SynonymFile {
                             .append(System.getProperty("line.separator"));
                 }
                 reader = new StringReader(sb.toString());
-            } else reader = new StringReader("");
+                if (cache != null) {
+                    String newLastModified = headerValue(response, LAST_MODIFIED_HEADER);
+                    String newETags = headerValue(response, ETAG_HEADER);
+                    if (newLastModified != null) {
+                        lastModified = newLastModified;
+                    }
+                    if (newETags != null) {
+                        eTags = newETags;
+                    }
+                    cache.store(sb.toString(), lastModified, eTags);
+                }
+            } else {
+                throw new IOException("remote synonym " + location + " return bad code " + statusLine.getStatusCode());
+            }
         } catch (Exception e) {
             logger.error("get remote synonym reader {} error!", location, e);
-//            throw new IllegalArgumentException(
-//                    "Exception while reading remote synonyms file", e);
-            // Fix #54 Returns blank if synonym file has be deleted.
-            reader = new StringReader("1=>1");
+            // forget the validators so that the next check downloads again
+            lastModified = null;
+            eTags = null;
+            throw new IllegalStateException("failed to download synonyms from " + location, e);
         } finally {
             try {
                 if (br != null) {
@@ -182,6 +258,10 @@ public class RemoteSynonymFile implements SynonymFile {
         return reader;
     }
 
+    /**
+     * @throws IllegalStateException if the server can not be reached or returns an
+     * unexpected status, so that the caller can back off.
+     */
     @Override
     public boolean isNeedReloadSynonymMap() {
         logger.info("==== isNeedReloadSynonymMap ====");
@@ -203,29 +283,24 @@ public class RemoteSynonymFile implements SynonymFile {
         CloseableHttpResponse response = null;
         try {
             response = executeHttpRequest(head);
-            assert response != null;
+            if (response == null) {
+                throw new IOException("no response from " + location);
+            }
             StatusLine statusLine = new StatusLine(response);
             if (statusLine.getStatusCode() == 200) { // 返回200 才做操作
-                if (!response.getLastHeader(LAST_MODIFIED_HEADER).getValue()
-                        .equalsIgnoreCase(lastModified)
-                        || !response.getLastHeader(ETAG_HEADER).getValue()
-                        .equalsIgnoreCase(eTags)) {
-
-                    lastModified = response.getLastHeader(LAST_MODIFIED_HEADER) == null ? null
-                            : response.getLastHeader(LAST_MODIFIED_HEADER)
-                            .getValue();
-                    eTags = response.getLastHeader(ETAG_HEADER) == null ? null
-                            : response.getLastHeader(ETAG_HEADER).getValue();
+                String newLastModified = headerValue(response, LAST_MODIFIED_HEADER);
+                String newETags = headerValue(response, ETAG_HEADER);
+                if (changed(newLastModified, lastModified) || changed(newETags, eTags)) {
+                    lastModified = newLastModified;
+                    eTags = newETags;
                     return true;
                 }
-            } else if (statusLine.getStatusCode() == 304) {
-                return false;
-            } else {
-                logger.info("remote synonym {} return bad code {}", location,
-                        statusLine.getStatusCode());
+            } else if (statusLine.getStatusCode() != 304) {
+                throw new IOException("remote synonym " + location + " return bad code " + statusLine.getStatusCode());
             }
-        } catch (Exception e){
             return false;
+        } catch (Exception e) {
+            throw new IllegalStateException("failed to check synonyms at " + location, e);
         } finally {
             try {
                 if (response != null) {
@@ -235,6 +310,17 @@ public class RemoteSynonymFile implements SynonymFile {
                 logger.error("failed to close http response", e);
             }
         }
-        return false;
+    }
+
+    private static String headerValue(CloseableHttpResponse response, String name) {
+        Header header = response.getLastHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    /**
+     * A validator the server does not send can not tell about a change.
+     */
+    private static boolean changed(String newValue, String oldValue) {
+        return newValue != null && !newValue.equalsIgnoreCase(oldValue);
     }
 }
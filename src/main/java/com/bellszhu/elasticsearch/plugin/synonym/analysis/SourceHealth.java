@@ -0,0 +1,141 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Failure tracking of a synonym source, shared by all factories of the node
+ * reading the same location.
+ * <p>
+ * After a failure the source is retried with an exponential backoff, starting
+ * at the polling interval and capped at the max backoff, and only one factory
+ * probes the source per backoff period. Once the failure threshold is reached
+ * the circuit opens and the source is only probed every max backoff until it
+ * succeeds again.
+ *
+ * @author bellszhu
+ */
+public final class SourceHealth {
+
+    private static final Logger logger = LogManager.getLogger("dynamic-synonym");
+
+    private static final Map<String, SourceHealth> sources = new ConcurrentHashMap<>();
+
+    public enum State {
+        GREEN,
+        YELLOW,
+        RED;
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final String location;
+    private final long intervalMillis;
+    private final long maxBackoffMillis;
+    private final int failureThreshold;
+
+    private int refCount;
+    private int consecutiveFailures;
+    private long nextAttemptMillis;
+    private String lastError;
+
+    private SourceHealth(String location, long intervalMillis, long maxBackoffMillis, int failureThreshold) {
+        this.location = location;
+        this.intervalMillis = intervalMillis;
+        this.maxBackoffMillis = Math.max(intervalMillis, maxBackoffMillis);
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * The first factory reading the location decides on the backoff settings.
+     */
+    static SourceHealth acquire(String location, long intervalMillis, long maxBackoffMillis, int failureThreshold) {
+        SourceHealth health = sources.compute(location, (key, existing) ->
+                existing == null ? new SourceHealth(key, intervalMillis, maxBackoffMillis, failureThreshold) : existing);
+        synchronized (health) {
+            health.refCount++;
+        }
+        return health;
+    }
+
+    void release() {
+        synchronized (this) {
+            if (--refCount > 0) {
+                return;
+            }
+        }
+        sources.remove(location, this);
+    }
+
+    /**
+     * @return true if the source may be checked now. A failing source reserves
+     * the attempt so that other factories wait for the next backoff period.
+     */
+    synchronized boolean tryAttempt(long now) {
+        if (consecutiveFailures == 0) {
+            return true;
+        }
+        if (now < nextAttemptMillis) {
+            return false;
+        }
+        nextAttemptMillis = now + backoffMillis();
+        return true;
+    }
+
+    synchronized void onSuccess() {
+        if (consecutiveFailures > 0) {
+            logger.info("synonym source {} recovered after {} failures", location, consecutiveFailures);
+        }
+        consecutiveFailures = 0;
+        nextAttemptMillis = 0;
+        lastError = null;
+    }
+
+    synchronized void onFailure(long now, Exception e) {
+        consecutiveFailures++;
+        lastError = e.toString();
+        nextAttemptMillis = now + backoffMillis();
+        if (consecutiveFailures == failureThreshold) {
+            logger.error("synonym source {} failed {} times in a row, only probe it every {}ms",
+                    location, consecutiveFailures, maxBackoffMillis);
+        }
+    }
+
+    private long backoffMillis() {
+        if (consecutiveFailures >= failureThreshold) {
+            return maxBackoffMillis;
+        }
+        int exponent = Math.min(consecutiveFailures - 1, 30);
+        return Math.min(maxBackoffMillis, intervalMillis << Math.max(exponent, 0));
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public synchronized State getState() {
+        if (consecutiveFailures == 0) {
+            return State.GREEN;
+        }
+        return consecutiveFailures < failureThreshold ? State.YELLOW : State.RED;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public synchronized long getNextAttemptMillis() {
+        return nextAttemptMillis;
+    }
+
+    public synchronized String getLastError() {
+        return lastError;
+    }
+}
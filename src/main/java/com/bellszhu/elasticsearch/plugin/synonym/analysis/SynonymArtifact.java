@@ -0,0 +1,233 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.InputStreamDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.fst.ByteSequenceOutputs;
+import org.apache.lucene.util.fst.FST;
+import org.elasticsearch.common.hash.MessageDigests;
+
+/**
+ * Precompiled synonym map, loaded without parsing the rules when {@code format}
+ * is {@code binary}.
+ * <p>
+ * The artifact holds the serialized FST, the output words, the number of rules,
+ * the analysis chain the rules were analyzed with and its fingerprint. It is
+ * stored as base64 text so that it goes through the same sources, cache and
+ * coordination as text rules, decoding it costs a fraction of parsing.
+ *
+ * @author bellszhu
+ */
+public final class SynonymArtifact {
+
+    public static final String FORMAT = "binary";
+
+    private static final String CODEC = "dynamic_synonym";
+    private static final int VERSION_START = 0;
+    /**
+     * Weights of the output words are stored as the bytes of the float
+     */
+    private static final int VERSION_BINARY_WEIGHTS = 1;
+    /**
+     * The fingerprint covers the types and settings of the chain, which is stored too
+     */
+    private static final int VERSION_CHAIN = 2;
+    private static final int VERSION_CURRENT = VERSION_CHAIN;
+
+    /**
+     * Text covering the usual tokenizer and filter behaviours: case, punctuation,
+     * possessives, numbers, accents and CJK
+     */
+    private static final String[] PROBES = {
+            "The Quick-Brown FOX's jumped over 2 lazy_dogs, e.g. U.S.A. at 10:30!",
+            "Ünïcödé café naïve straße",
+            "肯德基 麦当劳 ケンタッキー 맥도날드",
+    };
+
+    private final SynonymMap synonymMap;
+    private final int ruleCount;
+    private final String fingerprint;
+    private final String chain;
+
+    private SynonymArtifact(SynonymMap synonymMap, int ruleCount, String fingerprint, String chain) {
+        this.synonymMap = synonymMap;
+        this.ruleCount = ruleCount;
+        this.fingerprint = fingerprint;
+        this.chain = chain;
+    }
+
+    public static boolean isBinary(String format) {
+        return FORMAT.equalsIgnoreCase(format);
+    }
+
+    /**
+     * Serialize a synonym map built with the given analyzer.
+     */
+    public static String write(SynonymMap synonymMap, int ruleCount, Analyzer analyzer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutput out = new OutputStreamDataOutput(bytes);
+        CodecUtil.writeHeader(out, CODEC, VERSION_CURRENT);
+        out.writeString(fingerprint(analyzer));
+        out.writeString(chain(analyzer));
+        out.writeVInt(ruleCount);
+        out.writeVInt(synonymMap.maxHorizontalContext);
+        boolean hasFst = synonymMap.fst != null;
+        out.writeByte((byte) (hasFst ? 1 : 0));
+        if (hasFst) {
+            int size = synonymMap.words.size();
+            out.writeVInt(size);
+            BytesRef scratch = new BytesRef();
+            for (int i = 0; i < size; i++) {
+                synonymMap.words.get(i, scratch);
+                out.writeVInt(scratch.length);
+                out.writeBytes(scratch.bytes, scratch.offset, scratch.length);
+            }
+            synonymMap.fst.save(out, out);
+        }
+        return Base64.getMimeEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Load an artifact, checking that it was built with the same analysis chain.
+     *
+     * @throws IllegalArgumentException if the artifact was built with another analysis chain.
+     */
+    static SynonymMap read(Reader reader, Analyzer analyzer) throws IOException {
+        String text = readText(reader);
+        if (text.isBlank()) {
+            // no artifact yet, e.g. the source could not be read at startup
+            return new SynonymMap(null, new BytesRefHash(), 0);
+        }
+        SynonymArtifact artifact = read(text);
+        String expected = fingerprint(analyzer);
+        if (!expected.equals(artifact.fingerprint)) {
+            throw new IllegalArgumentException("synonym artifact was built with another analysis chain, fingerprint ["
+                    + artifact.fingerprint + "] of [" + artifact.chain + "] instead of [" + expected + "] of ["
+                    + chain(analyzer) + "]");
+        }
+        return artifact.synonymMap;
+    }
+
+    /**
+     * @return the number of rules the artifact was built from, 0 if there is no artifact yet.
+     * @throws IOException if the artifact is corrupted or of an unsupported version.
+     */
+    static int ruleCount(String text) throws IOException {
+        if (text.isBlank()) {
+            return 0;
+        }
+        // decode the base64 as the header is read, the words and the FST are never decoded
+        DataInput in = new InputStreamDataInput(Base64.getMimeDecoder().wrap(new InputStream() {
+            private int position;
+
+            @Override
+            public int read() {
+                return position < text.length() ? text.charAt(position++) & 0xFF : -1;
+            }
+        }));
+        checkHeader(in);
+        in.readString();
+        in.readString();
+        return in.readVInt();
+    }
+
+    private static SynonymArtifact read(String text) throws IOException {
+        DataInput in;
+        try {
+            in = new ByteArrayDataInput(Base64.getMimeDecoder().decode(text.trim()));
+        } catch (IllegalArgumentException e) {
+            throw new CorruptIndexException("synonym artifact is not base64", "synonym artifact", e);
+        }
+        checkHeader(in);
+        String fingerprint = in.readString();
+        String chain = in.readString();
+        int ruleCount = in.readVInt();
+        int maxHorizontalContext = in.readVInt();
+        BytesRefHash words = new BytesRefHash();
+        FST<BytesRef> fst = null;
+        if (in.readByte() == 1) {
+            int size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                byte[] word = new byte[in.readVInt()];
+                in.readBytes(word, 0, word.length);
+                words.add(new BytesRef(word));
+            }
+            fst = new FST<>(in, in, ByteSequenceOutputs.getSingleton());
+        }
+        return new SynonymArtifact(new SynonymMap(fst, words, maxHorizontalContext), ruleCount, fingerprint, chain);
+    }
+
+    /**
+     * Check the codec header, it is followed by the fingerprint, the chain and the rule count.
+     */
+    private static void checkHeader(DataInput in) throws IOException {
+        // older artifacts keep weights as text or have a weaker fingerprint, they have to be compiled again
+        CodecUtil.checkHeader(in, CODEC, VERSION_CHAIN, VERSION_CURRENT);
+    }
+
+    /**
+     * Hash of the components of the analysis chain and of the tokens the analyzer
+     * produces for fixed probe texts.
+     */
+    public static String fingerprint(Analyzer analyzer) throws IOException {
+        MessageDigest digest = MessageDigests.sha256();
+        digest.update(chain(analyzer).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 1);
+        for (String probe : PROBES) {
+            try (TokenStream ts = analyzer.tokenStream("", probe)) {
+                CharTermAttribute term = ts.addAttribute(CharTermAttribute.class);
+                PositionIncrementAttribute posInc = ts.addAttribute(PositionIncrementAttribute.class);
+                PositionLengthAttribute posLen = ts.addAttribute(PositionLengthAttribute.class);
+                ts.reset();
+                while (ts.incrementToken()) {
+                    digest.update(term.toString().getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                    digest.update((byte) posInc.getPositionIncrement());
+                    digest.update((byte) posLen.getPositionLength());
+                }
+                ts.end();
+            }
+            digest.update((byte) 1);
+        }
+        return MessageDigests.toHexString(digest.digest()).substring(0, 16);
+    }
+
+    /**
+     * @return the components of the chain, empty if the analyzer does not describe them.
+     */
+    public static String chain(Analyzer analyzer) {
+        return analyzer instanceof SynonymChainAnalyzer ? ((SynonymChainAnalyzer) analyzer).getChain() : "";
+    }
+
+    private static String readText(Reader reader) throws IOException {
+        try (Reader textReader = reader) {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = textReader.read(buffer)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.hash.MessageDigests;
+import org.elasticsearch.env.Environment;
+
+/**
+ * Last rules fetched from a remote source, persisted under the node data path
+ * together with their http validators so that a node can start without the
+ * remote server.
+ *
+ * @author bellszhu
+ */
+final class SynonymCache {
+
+    private static final Logger logger = LogManager.getLogger("dynamic-synonym");
+
+    static final String DIRECTORY = "dynamic_synonym";
+
+    private static final String LOCATION = "location";
+    private static final String LAST_MODIFIED = "last_modified";
+    private static final String ETAG = "etag";
+    private static final String SHA256 = "sha256";
+
+    private final String location;
+    private final Path rulesPath;
+    private final Path metaPath;
+
+    private SynonymCache(String location, Path directory) {
+        this.location = location;
+        String name = MessageDigests.toHexString(
+                MessageDigests.sha256().digest(location.getBytes(StandardCharsets.UTF_8)));
+        this.rulesPath = directory.resolve(name + ".txt");
+        this.metaPath = directory.resolve(name + ".properties");
+    }
+
+    /**
+     * @return the cache of the location, null if the node has no data path.
+     */
+    static SynonymCache of(Environment env, String location) {
+        Path[] dataFiles = env.dataFiles();
+        if (dataFiles == null || dataFiles.length == 0) {
+            return null;
+        }
+        return new SynonymCache(location, dataFiles[0].resolve(DIRECTORY));
+    }
+
+    /**
+     * @return the cached rules, null if there are none or they can not be read.
+     */
+    Entry load() {
+        if (!Files.exists(rulesPath) || !Files.exists(metaPath)) {
+            return null;
+        }
+        try (Reader metaReader = Files.newBufferedReader(metaPath, StandardCharsets.UTF_8)) {
+            Properties meta = new Properties();
+            meta.load(metaReader);
+            // a hash collision must not serve the rules of another source
+            if (!location.equals(meta.getProperty(LOCATION))) {
+                return null;
+            }
+            String rules = Files.readString(rulesPath, StandardCharsets.UTF_8);
+            // rules torn or replaced behind the validators are not served
+            if (!sha256(rules).equals(meta.getProperty(SHA256))) {
+                logger.warn("cached synonyms of {} do not match their checksum, ignore them", location);
+                return null;
+            }
+            return new Entry(rules, meta.getProperty(LAST_MODIFIED), meta.getProperty(ETAG));
+        } catch (IOException e) {
+            logger.warn("failed to read cached synonyms of {}", location, e);
+            return null;
+        }
+    }
+
+    /**
+     * Replace the cached rules. Each store writes its own temporary files so that
+     * concurrent stores never interleave, and the checksum kept with the
+     * validators rejects rules that do not belong to them.
+     */
+    void store(String rules, String lastModified, String eTag) {
+        try {
+            Files.createDirectories(rulesPath.getParent());
+            Properties meta = new Properties();
+            meta.setProperty(LOCATION, location);
+            meta.setProperty(SHA256, sha256(rules));
+            if (lastModified != null) {
+                meta.setProperty(LAST_MODIFIED, lastModified);
+            }
+            if (eTag != null) {
+                meta.setProperty(ETAG, eTag);
+            }
+            Path rulesTmp = Files.createTempFile(rulesPath.getParent(), rulesPath.getFileName().toString(), ".tmp");
+            Path metaTmp = null;
+            try {
+                Files.writeString(rulesTmp, rules, StandardCharsets.UTF_8);
+                metaTmp = Files.createTempFile(metaPath.getParent(), metaPath.getFileName().toString(), ".tmp");
+                try (Writer writer = Files.newBufferedWriter(metaTmp, StandardCharsets.UTF_8)) {
+                    meta.store(writer, null);
+                }
+                move(rulesTmp, rulesPath);
+                move(metaTmp, metaPath);
+            } finally {
+                Files.deleteIfExists(rulesTmp);
+                if (metaTmp != null) {
+                    Files.deleteIfExists(metaTmp);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("failed to cache synonyms of {}", location, e);
+        }
+    }
+
+    private static String sha256(String rules) {
+        return MessageDigests.toHexString(MessageDigests.sha256().digest(rules.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static final class Entry {
+
+        final String rules;
+        final String lastModified;
+        final String eTag;
+
+        Entry(String rules, String lastModified, String eTag) {
+            this.rules = rules;
+            this.lastModified = lastModified;
+            this.eTag = eTag;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.DelegatingAnalyzerWrapper;
+
+/**
+ * Analysis chain the rules are analyzed with, described by the type and the
+ * settings of its components. The description is part of the fingerprint of
+ * precompiled synonyms, it tells apart chains the probe texts can not.
+ *
+ * @author bellszhu
+ */
+public final class SynonymChainAnalyzer extends DelegatingAnalyzerWrapper {
+
+    private final Analyzer analyzer;
+    private final String chain;
+
+    public SynonymChainAnalyzer(Analyzer analyzer, String chain) {
+        super(GLOBAL_REUSE_STRATEGY);
+        this.analyzer = analyzer;
+        this.chain = chain;
+    }
+
+    @Override
+    protected Analyzer getWrappedAnalyzer(String fieldName) {
+        return analyzer;
+    }
+
+    /**
+     * @return the components of the chain, e.g. {@code tokenizer:whitespace()|filter:stop(ignorecase=true)}.
+     */
+    public String getChain() {
+        return chain;
+    }
+
+    @Override
+    public void close() {
+        analyzer.close();
+        super.close();
+    }
+
+    /**
+     * Describes the components in chain order. Names and setting keys are
+     * compared without case and underscores, so the Elasticsearch name
+     * {@code ignore_case} and the Lucene name {@code ignoreCase} are the same.
+     */
+    public static final class Chain {
+
+        private final StringBuilder description = new StringBuilder();
+
+        /**
+         * @param kind     {@code char_filter}, {@code tokenizer} or {@code filter}.
+         * @param type     type of the component.
+         * @param settings settings of the component besides its type.
+         */
+        public Chain add(String kind, String type, Map<String, String> settings) {
+            if (description.length() > 0) {
+                description.append('|');
+            }
+            description.append(kind).append(':').append(normalize(type)).append('(');
+            Map<String, String> sorted = new TreeMap<>();
+            settings.forEach((key, value) -> sorted.put(normalize(key), value));
+            String separator = "";
+            for (Map.Entry<String, String> setting : sorted.entrySet()) {
+                description.append(separator).append(setting.getKey()).append('=').append(setting.getValue());
+                separator = ",";
+            }
+            description.append(')');
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return description.toString();
+        }
+
+        private static String normalize(String name) {
+            return name.replace("_", "").toLowerCase(Locale.ROOT);
+        }
+    }
+}
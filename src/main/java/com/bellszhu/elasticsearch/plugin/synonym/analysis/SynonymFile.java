@@ -3,6 +3,7 @@
  */
 package com.bellszhu.elasticsearch.plugin.synonym.analysis;
 
+import java.io.Closeable;
 import java.io.Reader;
 
 import org.apache.lucene.analysis.synonym.SynonymMap;
@@ -10,12 +11,24 @@ import org.apache.lucene.analysis.synonym.SynonymMap;
 /**
  * @author bellszhu
  */
-public interface SynonymFile {
+public interface SynonymFile extends Closeable {
 
     SynonymMap reloadSynonymMap();
 
+    /**
+     * Build a synonym map from the given rules instead of the configured source.
+     */
+    SynonymMap reloadSynonymMap(Reader rulesReader);
+
     boolean isNeedReloadSynonymMap();
 
     Reader getReader();
 
+    /**
+     * Release the resources held by the source once its factory is no longer used.
+     */
+    @Override
+    default void close() {
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Watches the directories of local synonym files with a single
+ * {@link WatchService} thread shared by all factories of the node.
+ * <p>
+ * Every event of a directory notifies all of its listeners, so replacing a
+ * file by rename or swapping a symlinked directory (e.g. a mounted config
+ * map) is noticed as well. Listeners compare the content to filter out
+ * events of unrelated files. Watched files are still polled every
+ * {@code watch_interval} by their factory, some file systems (e.g. NFS or bind
+ * mounts) do not report every change.
+ *
+ * @author bellszhu
+ */
+final class SynonymFileWatcher {
+
+    private static final Logger logger = LogManager.getLogger("dynamic-synonym");
+
+    private static final Map<Path, Set<Runnable>> listeners = new ConcurrentHashMap<>();
+
+    private static final Map<Path, WatchKey> keys = new ConcurrentHashMap<>();
+
+    private static WatchService watchService;
+
+    private SynonymFileWatcher() {
+    }
+
+    /**
+     * Call the listener whenever the directory of the file changes.
+     *
+     * @return false if the file system can not be watched, the caller should poll instead.
+     */
+    static synchronized boolean watch(Path file, Runnable listener) {
+        Path dir = file.toAbsolutePath().getParent();
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread thread = new Thread(SynonymFileWatcher::run, "monitor-synonym-watcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            if (!keys.containsKey(dir)) {
+                keys.put(dir, dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+            }
+            listeners.computeIfAbsent(dir, k -> ConcurrentHashMap.newKeySet()).add(listener);
+            logger.info("watching {} for synonym changes", file);
+            return true;
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            logger.warn("failed to watch {}, fall back to polling", file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Stop calling the listener, the directory is no longer watched once it has no listeners.
+     */
+    static synchronized void unwatch(Path file, Runnable listener) {
+        Path dir = file.toAbsolutePath().getParent();
+        Set<Runnable> dirListeners = listeners.get(dir);
+        if (dirListeners == null || !dirListeners.remove(listener) || !dirListeners.isEmpty()) {
+            return;
+        }
+        listeners.remove(dir);
+        WatchKey key = keys.remove(dir);
+        if (key != null) {
+            key.cancel();
+        }
+    }
+
+    private static void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            // drain the events, a burst of writes triggers a single check
+            key.pollEvents();
+            Set<Runnable> dirListeners = listeners.get((Path) key.watchable());
+            if (dirListeners != null) {
+                for (Runnable listener : dirListeners) {
+                    // a failing listener must not stop the thread and every other watched file
+                    try {
+                        listener.run();
+                    } catch (Exception e) {
+                        logger.warn("failed to notify a synonym listener of changes in {}", key.watchable(), e);
+                    }
+                }
+            }
+            key.reset();
+        }
+    }
+}
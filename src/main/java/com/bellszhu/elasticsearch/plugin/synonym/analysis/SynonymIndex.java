@@ -0,0 +1,215 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.internal.Client;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.index.IndexModule;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.shard.IndexEventListener;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.shard.IndexingOperationListener;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.SystemIndexDescriptor;
+import org.elasticsearch.tasks.TaskResultsService;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xcontent.json.JsonXContent;
+
+/**
+ * The system index holding synonym rules, one document per source.
+ * <p>
+ * The index expands to every data node, so sources are read from the local
+ * shard copy and indexing operations on that copy notify the factories reading
+ * the changed document. One instance per node, owned by its {@link SynonymRegistry}.
+ *
+ * @author bellszhu
+ */
+public final class SynonymIndex {
+
+    private static final Logger logger = LogManager.getLogger("dynamic-synonym");
+
+    public static final String INDEX_NAME = ".dynamic_synonym";
+    /**
+     * Security only runs requests of the origins it knows as an internal user and
+     * refuses the others, the tasks origin runs as the internal user allowed to
+     * read system indices.
+     */
+    public static final String ORIGIN = TaskResultsService.TASKS_ORIGIN;
+    public static final String RULES_FIELD = "rules";
+
+    private final SynonymRegistry registry;
+
+    private volatile Client client;
+
+    /**
+     * Last known rules document per id
+     */
+    private final Map<String, Document> documents = new ConcurrentHashMap<>();
+
+    SynonymIndex(SynonymRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void init(Client client) {
+        this.client = client;
+    }
+
+    public static SystemIndexDescriptor descriptor() {
+        return SystemIndexDescriptor.builder()
+                .setIndexPattern(INDEX_NAME + "*")
+                .setPrimaryIndex(INDEX_NAME)
+                .setDescription("Synonym rules for the dynamic synonym filters")
+                .setMappings(mappings())
+                .setSettings(Settings.builder()
+                        .put("index.number_of_shards", 1)
+                        .put("index.auto_expand_replicas", "0-all")
+                        .build())
+                .setVersionMetaKey("version")
+                .setOrigin(ORIGIN)
+                .build();
+    }
+
+    private static XContentBuilder mappings() {
+        try {
+            return JsonXContent.contentBuilder()
+                    .startObject()
+                    .startObject("_meta")
+                    .field("version", Version.CURRENT.toString())
+                    .endObject()
+                    .field("dynamic", "strict")
+                    .startObject("properties")
+                    .startObject(RULES_FIELD)
+                    .field("type", "text")
+                    .field("index", false)
+                    .endObject()
+                    .endObject()
+                    .endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to build mappings for " + INDEX_NAME, e);
+        }
+    }
+
+    /**
+     * Listen to writes on the local copies of the synonym index, the written
+     * document is kept as the last known rules so that it is not read again.
+     */
+    public void onIndexModule(IndexModule indexModule) {
+        if (!INDEX_NAME.equals(indexModule.getIndex().getName())) {
+            return;
+        }
+        indexModule.addIndexOperationListener(new IndexingOperationListener() {
+            @Override
+            public void postIndex(ShardId shardId, Engine.Index index, Engine.IndexResult result) {
+                if (result.getResultType() == Engine.Result.Type.SUCCESS) {
+                    Map<String, Object> source = XContentHelper.convertToMap(
+                            index.source(), false, index.parsedDoc().getXContentType()).v2();
+                    update(index.id(), new Document(getRules(source), result.getSeqNo(), index.primaryTerm()));
+                }
+            }
+
+            @Override
+            public void postDelete(ShardId shardId, Engine.Delete delete, Engine.DeleteResult result) {
+                if (result.getResultType() == Engine.Result.Type.SUCCESS) {
+                    update(delete.id(), new Document("", result.getSeqNo(), delete.primaryTerm()));
+                }
+            }
+        });
+        indexModule.addIndexEventListener(new IndexEventListener() {
+            @Override
+            public void afterIndexShardStarted(IndexShard indexShard) {
+                // writes may have been missed while the local copy was recovering
+                for (String id : documents.keySet()) {
+                    load(id, ActionListener.wrap(document -> {},
+                            e -> logger.warn("failed to read synonyms document [{}]", id, e)));
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the last known rules document, null if it has not been read yet.
+     */
+    Document document(String id) {
+        return documents.get(id);
+    }
+
+    /**
+     * Asynchronous realtime get of a rules document, preferring the local shard copy.
+     * The document becomes the last known one and the factories reading it are notified.
+     */
+    void load(String id, ActionListener<Document> listener) {
+        Client nodeClient = client;
+        if (nodeClient == null) {
+            listener.onFailure(new IllegalStateException("synonym index is not available before the node started"));
+            return;
+        }
+        ThreadContext threadContext = nodeClient.threadPool().getThreadContext();
+        try (ThreadContext.StoredContext ignore = threadContext.stashWithOrigin(ORIGIN)) {
+            nodeClient.prepareGet(INDEX_NAME, id)
+                    .setPreference("_local")
+                    .setRealtime(true)
+                    .execute(ActionListener.wrap(response -> {
+                        Document document = new Document(response.isExists() ? getRules(response.getSourceAsMap()) : "",
+                                response.getSeqNo(), response.getPrimaryTerm());
+                        listener.onResponse(update(id, document));
+                    }, listener::onFailure));
+        }
+    }
+
+    /**
+     * Keep the most recent of the known and the given document, notify the factories if it changed.
+     */
+    Document update(String id, Document document) {
+        Document current = documents.merge(id, document, (known, read) -> read.isNewerThan(known) ? read : known);
+        if (current == document) {
+            registry.notifyChanged((IndexSynonymFile.PREFIX + id)::equals);
+        }
+        return current;
+    }
+
+    /**
+     * The rules field may hold a single string or an array of lines.
+     */
+    static String getRules(Map<String, Object> source) {
+        Object rules = source.get(RULES_FIELD);
+        if (rules instanceof List) {
+            StringBuilder sb = new StringBuilder();
+            for (Object line : (List<?>) rules) {
+                sb.append(line).append(System.getProperty("line.separator"));
+            }
+            return sb.toString();
+        }
+        return rules == null ? "" : rules.toString();
+    }
+
+    /**
+     * Rules document as last read or written on this node
+     */
+    static final class Document {
+
+        final String rules;
+        final long seqNo;
+        final long primaryTerm;
+
+        Document(String rules, long seqNo, long primaryTerm) {
+            this.rules = rules;
+            this.seqNo = seqNo;
+            this.primaryTerm = primaryTerm;
+        }
+
+        private boolean isNewerThan(Document other) {
+            // an absent document has unassigned seq_no and primary term, any write is newer
+            return primaryTerm > other.primaryTerm || (primaryTerm == other.primaryTerm && seqNo > other.seqNo);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.text.ParseException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+
+/**
+ * Builds a synonym map from rules the way the filters do: drops duplicated
+ * rules and merges equivalences if enabled, then parses the rules, in
+ * partitions or at once. The filters and the offline compiler both build
+ * through it, so a compiled map is the map a node would build.
+ *
+ * @author bellszhu
+ */
+public final class SynonymMapBuilder {
+
+    private static final Logger logger = LogManager.getLogger("dynamic-synonym");
+
+    private final String format;
+    private final boolean expand;
+    private final boolean lenient;
+    private final boolean deduplicate;
+    private final boolean collapseEquivalences;
+
+    public SynonymMapBuilder(String format, boolean expand, boolean lenient,
+                             boolean deduplicate, boolean collapseEquivalences) {
+        this.format = format;
+        this.expand = expand;
+        this.lenient = lenient;
+        this.deduplicate = deduplicate;
+        this.collapseEquivalences = collapseEquivalences;
+    }
+
+    /**
+     * Build the map at once, it keeps the words hash of the parser.
+     */
+    public Build build(String rules, Analyzer analyzer) throws IOException, ParseException {
+        return build(rules, analyzer, null, "synonyms");
+    }
+
+    /**
+     * Build the map with the partitioned builder, at once if it is null.
+     */
+    Build build(String rules, Analyzer analyzer, PartitionedSynonymBuilder partitionedBuilder, String location)
+            throws IOException, ParseException {
+        SynonymRules prepared = prepare(rules);
+        StringReader rulesReader = new StringReader(prepared == null ? rules : prepared.getText());
+        SynonymMap synonymMap = partitionedBuilder == null
+                ? RemoteSynonymFile.buildSynonymMap(rulesReader, format, expand, lenient, analyzer)
+                : partitionedBuilder.build(rulesReader, analyzer, location);
+        return new Build(synonymMap, ruleCount(rules), prepared);
+    }
+
+    /**
+     * Build the map of a filter: with memory reserved on the breaker for the
+     * duration of the build, and the output words decoded once for the filters.
+     *
+     * @throws IllegalArgumentException if the rules can not be parsed.
+     */
+    Build buildCompact(String rules, Analyzer analyzer, PartitionedSynonymBuilder partitionedBuilder, String location) {
+        long reserved = SynonymMemory.reserveBuild(rules, location);
+        try {
+            Build build;
+            try {
+                build = build(rules, analyzer, partitionedBuilder, location);
+            } catch (IOException | ParseException e) {
+                throw new IllegalArgumentException("could not build synonyms from " + location, e);
+            }
+            SynonymMap synonymMap = CompactSynonymMap.compact(build.synonymMap);
+            if (build.isPrepared()) {
+                logger.info("built {} synonym rules from {} ({} duplicates dropped), {} terms, {} outputs, fst {} bytes",
+                        build.getUniqueRuleCount(), location, build.getDuplicateCount(), build.getTermCount(),
+                        CompactSynonymMap.wordCount(synonymMap), CompactSynonymMap.fstBytes(synonymMap));
+            }
+            return new Build(synonymMap, build.ruleCount, build.prepared);
+        } finally {
+            SynonymMemory.adjust(-reserved);
+        }
+    }
+
+    /**
+     * Blank duplicated rules and merge equivalence classes, if enabled, of solr format rules.
+     */
+    private SynonymRules prepare(String rules) {
+        if ((!deduplicate && !collapseEquivalences) || "wordnet".equalsIgnoreCase(format) || SynonymArtifact.isBinary(format)) {
+            return null;
+        }
+        return SynonymRules.prepare(rules, collapseEquivalences);
+    }
+
+    /**
+     * @return the number of rules, as stored in a binary artifact or as counted by {@link #countRules(String)}.
+     * @throws IOException if the binary artifact can not be read.
+     */
+    int ruleCount(String rules) throws IOException {
+        return SynonymArtifact.isBinary(format) ? SynonymArtifact.ruleCount(rules) : countRules(rules);
+    }
+
+    /**
+     * Count the lines that are neither blank nor comments.
+     */
+    static int countRules(String rules) {
+        int count = 0;
+        for (String line : rules.split("\\r?\\n")) {
+            String rule = line.trim();
+            if (!rule.isEmpty() && !rule.startsWith("#")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A built map and the statistics of its rules.
+     */
+    public static final class Build {
+
+        private final SynonymMap synonymMap;
+        private final int ruleCount;
+        /**
+         * Cleaned up rules, null if they were parsed as is
+         */
+        private final SynonymRules prepared;
+
+        private Build(SynonymMap synonymMap, int ruleCount, SynonymRules prepared) {
+            this.synonymMap = synonymMap;
+            this.ruleCount = ruleCount;
+            this.prepared = prepared;
+        }
+
+        public SynonymMap getSynonymMap() {
+            return synonymMap;
+        }
+
+        /**
+         * @return the number of rules of the source, duplicates included.
+         */
+        public int getRuleCount() {
+            return ruleCount;
+        }
+
+        /**
+         * @return true if duplicates were dropped or equivalences merged before parsing.
+         */
+        public boolean isPrepared() {
+            return prepared != null;
+        }
+
+        /**
+         * @return the number of rules parsed.
+         */
+        public int getUniqueRuleCount() {
+            return prepared == null ? ruleCount : prepared.getRuleCount();
+        }
+
+        public int getDuplicateCount() {
+            return prepared == null ? 0 : prepared.getDuplicateCount();
+        }
+
+        /**
+         * @return the number of distinct terms of the rules, only counted if prepared.
+         */
+        public int getTermCount() {
+            return prepared == null ? 0 : prepared.getTermCount();
+        }
+
+        SynonymRules getPrepared() {
+            return prepared;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.unit.ByteSizeValue;
+
+/**
+ * Accounts the heap used by the synonym maps of the node on the
+ * {@code dynamic_synonym} circuit breaker.
+ * <p>
+ * A build reserves an estimate based on the size of the rules and is rejected
+ * if the breaker would trip, the built map is then charged while it is in use.
+ *
+ * @author bellszhu
+ */
+public final class SynonymMemory {
+
+    public static final String BREAKER_NAME = "dynamic_synonym";
+
+    public static final Setting<ByteSizeValue> LIMIT_SETTING =
+            Setting.memorySizeSetting("breaker.dynamic_synonym.limit", "10%", Setting.Property.NodeScope);
+
+    public static final Setting<Double> OVERHEAD_SETTING =
+            Setting.doubleSetting("breaker.dynamic_synonym.overhead", 1.0, 0.0, Setting.Property.NodeScope);
+
+    /**
+     * Peak heap of the parser per char of rules: the rule strings, the analyzed
+     * CharsRefs and the entries of the builder and the FST compiler
+     */
+    private static final long BUILD_BYTES_PER_CHAR = 8 * Character.BYTES;
+
+    /**
+     * Per word overhead of BytesRefHash: the ids, the hash slot and the start offset
+     */
+    private static final long BYTES_PER_WORD = 3 * Integer.BYTES;
+
+    private static volatile CircuitBreaker breaker = new NoopCircuitBreaker(BREAKER_NAME);
+
+    private SynonymMemory() {
+    }
+
+    public static void setBreaker(CircuitBreaker circuitBreaker) {
+        breaker = circuitBreaker;
+    }
+
+    /**
+     * Reserve the memory needed to build a map from the given rules.
+     *
+     * @return the reserved bytes, to be released once the build is done.
+     * @throws org.elasticsearch.common.breaker.CircuitBreakingException if the breaker would trip.
+     */
+    static long reserveBuild(String rules, String location) {
+        long bytes = rules.length() * BUILD_BYTES_PER_CHAR;
+        breaker.addEstimateBytesAndMaybeBreak(bytes, "dynamic_synonym build [" + location + "]");
+        return bytes;
+    }
+
+    /**
+     * Charge or release resident bytes, resident maps are never rejected.
+     */
+    static void adjust(long bytes) {
+        if (bytes != 0) {
+            breaker.addWithoutBreaking(bytes);
+        }
+    }
+
+    static long ramBytesUsed(SynonymMap synonymMap) {
+        if (synonymMap == null || synonymMap.fst == null) {
+            return 0;
+        }
+        if (synonymMap instanceof TenantSynonymMap) {
+            TenantSynonymMap tenantMap = (TenantSynonymMap) synonymMap;
+            long bytes = RamUsageEstimator.shallowSizeOf(synonymMap) + ramBytesUsed(tenantMap.getDefaultMap());
+            for (SynonymMap tenant : tenantMap.getTenants().values()) {
+                bytes += ramBytesUsed(tenant);
+            }
+            return bytes;
+        }
+        if (synonymMap instanceof PartitionedSynonymMap) {
+            long bytes = RamUsageEstimator.shallowSizeOf(synonymMap);
+            for (SynonymMap partition : ((PartitionedSynonymMap) synonymMap).getPartitions()) {
+                bytes += ramBytesUsed(partition);
+            }
+            return bytes;
+        }
+        if (synonymMap instanceof CompactSynonymMap) {
+            return ((CompactSynonymMap) synonymMap).ramBytesUsed();
+        }
+        long bytes = synonymMap.fst.ramBytesUsed();
+        BytesRef scratch = new BytesRef();
+        int size = synonymMap.words.size();
+        for (int i = 0; i < size; i++) {
+            bytes += synonymMap.words.get(i, scratch).length + BYTES_PER_WORD;
+        }
+        return bytes + RamUsageEstimator.shallowSizeOf(synonymMap);
+    }
+}
@@ -0,0 +1,120 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs the polls of the synonym sources. By default a poll runs on the monitor
+ * thread that scheduled it, the monitor pool bounds the polls running at once.
+ * With virtual threads, an explicit opt-in that requires JDK 21, every poll runs
+ * on its own virtual thread and at most a fixed number of polls run at once, so
+ * thousands of blocking sources need neither a big pool nor wait for each other.
+ * <p>
+ * Virtual threads run without any permission under the security manager, the
+ * polls run them with the permissions of the plugin.
+ *
+ * @author bellszhu
+ */
+public final class SynonymPoller {
+
+    private static final Logger logger = LogManager.getLogger("dynamic-synonym");
+
+    /**
+     * First JDK where virtual threads are not a preview feature
+     */
+    static final int VIRTUAL_THREADS_JDK = 21;
+
+    /**
+     * Virtual thread per poll, null to poll on the monitor threads
+     */
+    private static volatile ExecutorService virtualThreads;
+    private static volatile Semaphore permits = new Semaphore(64);
+
+    private SynonymPoller() {
+    }
+
+    /**
+     * Poll on virtual threads if enabled and the JVM is JDK 21 or later, looked up
+     * by reflection as the plugin is built for older JDKs. Otherwise the polls stay
+     * on the monitor threads.
+     *
+     * @return true if the polls run on virtual threads.
+     */
+    public static synchronized boolean setVirtualThreads(boolean enabled) {
+        ExecutorService previous = virtualThreads;
+        virtualThreads = null;
+        if (previous != null) {
+            previous.shutdown();
+        }
+        if (!enabled) {
+            return false;
+        }
+        if (Runtime.version().feature() < VIRTUAL_THREADS_JDK) {
+            // e.g. JDK 20 bundled with some versions, where they are a preview feature
+            logger.warn("virtual threads require JDK {}, running on JDK {}, polling synonym sources on the monitor threads",
+                    VIRTUAL_THREADS_JDK, Runtime.version().feature());
+            return false;
+        }
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, "monitor-synonym-virtual-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            virtualThreads = (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+            logger.info("polling synonym sources on virtual threads");
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("virtual threads are not available, polling synonym sources on the monitor threads", e);
+            return false;
+        }
+    }
+
+    /**
+     * Limit the polls running at once on virtual threads.
+     */
+    public static void setMaxConcurrentPolls(int maxConcurrentPolls) {
+        permits = new Semaphore(maxConcurrentPolls);
+    }
+
+    /**
+     * Run the poll on a virtual thread within the limit, or right away on the calling monitor thread.
+     *
+     * @param abort run instead of the poll if it is interrupted while waiting for the limit.
+     * @throws java.util.concurrent.RejectedExecutionException if the virtual threads were shut down.
+     */
+    static void execute(Runnable poll, Runnable abort) {
+        ExecutorService executor = virtualThreads;
+        if (executor == null) {
+            poll.run();
+            return;
+        }
+        Semaphore limit = permits;
+        executor.execute(() -> {
+            try {
+                limit.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abort.run();
+                return;
+            }
+            try {
+                // stops the permission checks at this frame, before the empty context of the virtual thread
+                AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+                    poll.run();
+                    return null;
+                });
+            } finally {
+                limit.release();
+            }
+        });
+    }
+}
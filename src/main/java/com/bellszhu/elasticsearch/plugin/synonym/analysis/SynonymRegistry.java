@@ -0,0 +1,157 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.elasticsearch.index.analysis.AnalyzerComponentsProvider;
+import org.elasticsearch.index.analysis.IndexAnalyzers;
+import org.elasticsearch.index.analysis.NamedAnalyzer;
+import org.elasticsearch.index.analysis.ReloadableCustomAnalyzer;
+import org.elasticsearch.index.analysis.TokenFilterFactory;
+
+import com.bellszhu.elasticsearch.plugin.synonym.action.SynonymCoordinator;
+
+/**
+ * Registry of the dynamic synonym factories of a node used by an analyzer,
+ * along with the node's coordinator and synonym index. One instance per node,
+ * so that nodes sharing a JVM (e.g. tests) keep their own state.
+ *
+ * @author bellszhu
+ */
+public final class SynonymRegistry {
+
+    private static final Cleaner cleaner = Cleaner.create();
+
+    private final Set<DynamicSynonymTokenFilterFactory> factories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Chain aware factories handed out to analyzers, each releases its factory once
+     */
+    private final Map<TokenFilterFactory, Cleaner.Cleanable> cleanables =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final SynonymCoordinator coordinator = new SynonymCoordinator();
+
+    private final SynonymIndex synonymIndex = new SynonymIndex(this);
+
+    public SynonymCoordinator getCoordinator() {
+        return coordinator;
+    }
+
+    public SynonymIndex getSynonymIndex() {
+        return synonymIndex;
+    }
+
+    void register(DynamicSynonymTokenFilterFactory factory) {
+        factories.add(factory);
+    }
+
+    void unregister(DynamicSynonymTokenFilterFactory factory) {
+        factories.remove(factory);
+    }
+
+    /**
+     * Release the factory when the chain aware factory becomes unreachable, which
+     * also covers analyzers that are never bound to an index (e.g. validation).
+     */
+    void track(TokenFilterFactory chainAwareFactory, DynamicSynonymTokenFilterFactory factory) {
+        cleanables.put(chainAwareFactory, cleaner.register(chainAwareFactory, factory::release));
+    }
+
+    /**
+     * Release the factories used by the analyzers of a removed index right away.
+     */
+    public void release(IndexAnalyzers indexAnalyzers) {
+        release(filters(indexAnalyzers, false));
+    }
+
+    /**
+     * @return the filters of the search time analyzers, to be released once the analyzers are reloaded.
+     */
+    public List<TokenFilterFactory> reloadableFilters(IndexAnalyzers indexAnalyzers) {
+        return filters(indexAnalyzers, true);
+    }
+
+    public void release(List<TokenFilterFactory> tokenFilters) {
+        for (TokenFilterFactory tokenFilter : tokenFilters) {
+            Cleaner.Cleanable cleanable = cleanables.remove(tokenFilter);
+            if (cleanable != null) {
+                cleanable.clean();
+            }
+        }
+    }
+
+    private static List<TokenFilterFactory> filters(IndexAnalyzers indexAnalyzers, boolean reloadableOnly) {
+        List<TokenFilterFactory> filters = new ArrayList<>();
+        for (NamedAnalyzer namedAnalyzer : indexAnalyzers.getAnalyzers().values()) {
+            Analyzer analyzer = namedAnalyzer.analyzer();
+            if (!(analyzer instanceof AnalyzerComponentsProvider)
+                    || (reloadableOnly && !(analyzer instanceof ReloadableCustomAnalyzer))) {
+                continue;
+            }
+            filters.addAll(((AnalyzerComponentsProvider) analyzer).getComponents().getTokenFilters());
+        }
+        return filters;
+    }
+
+    /**
+     * Apply rules pushed by the designated node to every local factory of the given coordinated filter.
+     *
+     * @return the number of factories that rebuilt their synonym map.
+     */
+    public int applyRules(String id, String rules) {
+        int applied = 0;
+        for (DynamicSynonymTokenFilterFactory factory : factories) {
+            if (id.equals(factory.getCoordinationId()) && factory.applyRules(rules)) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * @return the rules of the given coordinated filter on this node, null if they have the given hash or are unknown.
+     */
+    public String coordinatedRules(String id, String hash) {
+        for (DynamicSynonymTokenFilterFactory factory : factories) {
+            if (id.equals(factory.getCoordinationId())) {
+                String rules = factory.getCoordinatedRules(hash);
+                if (rules != null) {
+                    return rules;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the state of every monitored factory of this node.
+     */
+    public List<SynonymStats> stats() {
+        List<SynonymStats> stats = new ArrayList<>();
+        for (DynamicSynonymTokenFilterFactory factory : factories) {
+            stats.addAll(factory.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * Ask the factories reading a matching location to check their source now
+     * instead of waiting for the next interval.
+     */
+    void notifyChanged(Predicate<String> locations) {
+        for (DynamicSynonymTokenFilterFactory factory : factories) {
+            if (factory.getLocations().stream().anyMatch(locations)) {
+                factory.scheduleReload();
+            }
+        }
+    }
+}
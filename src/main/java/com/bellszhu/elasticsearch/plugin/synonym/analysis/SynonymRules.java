@@ -0,0 +1,195 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Solr format rules cleaned up before they are parsed: duplicated rules are
+ * blanked, and optionally equivalence rules sharing a term are merged into a
+ * single rule per equivalence class. The rules keep their order and their line
+ * numbers, comments and the unique rules are left as they are.
+ *
+ * @author bellszhu
+ */
+final class SynonymRules {
+
+    private static final String MAPPING = "=>";
+
+    private final String text;
+    private final int ruleCount;
+    private final int duplicateCount;
+    private final int termCount;
+
+    private SynonymRules(String text, int ruleCount, int duplicateCount, int termCount) {
+        this.text = text;
+        this.ruleCount = ruleCount;
+        this.duplicateCount = duplicateCount;
+        this.termCount = termCount;
+    }
+
+    /**
+     * @param collapseEquivalences merge equivalence rules sharing a term, which makes
+     *                             the equivalence transitive: "a, b" and "b, c" become "a, b, c"
+     *                             on the line of "a, b".
+     */
+    static SynonymRules prepare(String rules, boolean collapseEquivalences) {
+        String[] lines = rules.split("\\r?\\n", -1);
+        Set<List<Set<String>>> seenMappings = new HashSet<>();
+        Set<Set<String>> seenEquivalences = new HashSet<>();
+        Map<Integer, List<String>> equivalences = new LinkedHashMap<>();
+        Set<String> terms = new HashSet<>();
+        int duplicates = 0;
+        for (int i = 0; i < lines.length; i++) {
+            String rule = lines[i].trim();
+            if (rule.isEmpty() || rule.startsWith("#")) {
+                continue;
+            }
+            int arrow = indexOfMapping(rule);
+            boolean unique;
+            if (arrow >= 0) {
+                List<String> inputs = split(rule.substring(0, arrow));
+                List<String> outputs = split(rule.substring(arrow + MAPPING.length()));
+                terms.addAll(inputs);
+                terms.addAll(outputs);
+                unique = seenMappings.add(List.of(new TreeSet<>(inputs), new TreeSet<>(outputs)));
+            } else {
+                List<String> equivalence = new ArrayList<>(new LinkedHashSet<>(split(rule)));
+                terms.addAll(equivalence);
+                unique = seenEquivalences.add(new TreeSet<>(equivalence));
+                if (unique && !equivalence.isEmpty()) {
+                    equivalences.put(i, equivalence);
+                }
+            }
+            if (!unique) {
+                // blank rather than remove, the parse errors keep their line numbers
+                lines[i] = "";
+                duplicates++;
+            }
+        }
+        if (collapseEquivalences) {
+            collapse(lines, equivalences);
+        }
+        int ruleCount = 0;
+        for (String line : lines) {
+            String rule = line.trim();
+            if (!rule.isEmpty() && !rule.startsWith("#")) {
+                ruleCount++;
+            }
+        }
+        return new SynonymRules(String.join("\n", lines), ruleCount, duplicates, terms.size());
+    }
+
+    /**
+     * @return the index of the first unescaped "=>" of the rule, -1 if it is an equivalence.
+     */
+    static int indexOfMapping(String rule) {
+        for (int i = 0; i < rule.length() - 1; i++) {
+            char c = rule.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '=' && rule.charAt(i + 1) == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Split on unescaped commas and normalize the whitespace of each term, the escapes are kept.
+     */
+    static List<String> split(String terms) {
+        List<String> result = new ArrayList<>();
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i < terms.length(); i++) {
+            char c = terms.charAt(i);
+            if (c == '\\' && i + 1 < terms.length()) {
+                term.append(c).append(terms.charAt(++i));
+            } else if (c == ',') {
+                add(result, term);
+            } else {
+                term.append(c);
+            }
+        }
+        add(result, term);
+        return result;
+    }
+
+    private static void add(List<String> result, StringBuilder term) {
+        String normalized = term.toString().trim().replaceAll("\\s+", " ");
+        if (!normalized.isEmpty()) {
+            result.add(normalized);
+        }
+        term.setLength(0);
+    }
+
+    /**
+     * Merge the equivalence rules sharing a term on the line of the first of them,
+     * keeping the order the terms first appeared in, and blank the other lines.
+     */
+    private static void collapse(String[] lines, Map<Integer, List<String>> equivalences) {
+        Map<String, String> parents = new HashMap<>();
+        for (List<String> equivalence : equivalences.values()) {
+            String root = find(parents, equivalence.get(0));
+            for (String term : equivalence) {
+                String other = find(parents, term);
+                if (!other.equals(root)) {
+                    parents.put(other, root);
+                }
+            }
+        }
+        Map<String, Integer> firstLines = new HashMap<>();
+        Map<Integer, Set<String>> classes = new LinkedHashMap<>();
+        for (Map.Entry<Integer, List<String>> equivalence : equivalences.entrySet()) {
+            String root = find(parents, equivalence.getValue().get(0));
+            int line = firstLines.computeIfAbsent(root, k -> equivalence.getKey());
+            classes.computeIfAbsent(line, k -> new LinkedHashSet<>()).addAll(equivalence.getValue());
+            if (line != equivalence.getKey()) {
+                lines[equivalence.getKey()] = "";
+            }
+        }
+        for (Map.Entry<Integer, Set<String>> merged : classes.entrySet()) {
+            if (merged.getValue().size() > equivalences.get(merged.getKey()).size()) {
+                lines[merged.getKey()] = String.join(", ", merged.getValue());
+            }
+        }
+    }
+
+    private static String find(Map<String, String> parents, String term) {
+        String root = term;
+        String parent;
+        while ((parent = parents.get(root)) != null) {
+            root = parent;
+        }
+        // path compression
+        String current = term;
+        while (!current.equals(root)) {
+            String next = parents.get(current);
+            parents.put(current, root);
+            current = next;
+        }
+        return root;
+    }
+
+    String getText() {
+        return text;
+    }
+
+    int getRuleCount() {
+        return ruleCount;
+    }
+
+    int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    int getTermCount() {
+        return termCount;
+    }
+}
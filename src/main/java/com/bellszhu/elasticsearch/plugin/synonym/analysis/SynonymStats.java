@@ -0,0 +1,188 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.xcontent.ToXContentObject;
+import org.elasticsearch.xcontent.XContentBuilder;
+
+/**
+ * State of a dynamic synonym filter on a node.
+ *
+ * @author bellszhu
+ */
+public class SynonymStats implements Writeable, ToXContentObject {
+
+    private final String index;
+    private final String filter;
+    private final String location;
+    private final boolean ready;
+    private final long version;
+    private final String hash;
+    private final long timestamp;
+    private final int ruleCount;
+    private final int uniqueRuleCount;
+    private final int duplicateRuleCount;
+    private final int termCount;
+    private final int outputCount;
+    private final long fstBytes;
+    private final List<Source> sources;
+
+    SynonymStats(String index, String filter, String location, boolean ready, SynonymVersion version, int ruleCount,
+                 int uniqueRuleCount, int duplicateRuleCount, int termCount, int outputCount, long fstBytes,
+                 List<Source> sources) {
+        this.index = index;
+        this.filter = filter;
+        this.location = location;
+        this.ready = ready;
+        this.version = version.getVersion();
+        this.hash = version.getHash();
+        this.timestamp = version.getTimestamp();
+        this.ruleCount = ruleCount;
+        this.uniqueRuleCount = uniqueRuleCount;
+        this.duplicateRuleCount = duplicateRuleCount;
+        this.termCount = termCount;
+        this.outputCount = outputCount;
+        this.fstBytes = fstBytes;
+        this.sources = sources;
+    }
+
+    public SynonymStats(StreamInput in) throws IOException {
+        this.index = in.readString();
+        this.filter = in.readString();
+        this.location = in.readString();
+        this.ready = in.readBoolean();
+        this.version = in.readVLong();
+        this.hash = in.readOptionalString();
+        this.timestamp = in.readVLong();
+        this.ruleCount = in.readVInt();
+        this.uniqueRuleCount = in.readVInt();
+        this.duplicateRuleCount = in.readVInt();
+        this.termCount = in.readInt();
+        this.outputCount = in.readVInt();
+        this.fstBytes = in.readVLong();
+        this.sources = in.readList(Source::new);
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return true once the synonym map is built, possibly without synonyms if the build failed.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return the sha256 of the rules the filter serves, null before the first build.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeString(index);
+        out.writeString(filter);
+        out.writeString(location);
+        out.writeBoolean(ready);
+        out.writeVLong(version);
+        out.writeOptionalString(hash);
+        out.writeVLong(timestamp);
+        out.writeVInt(ruleCount);
+        out.writeVInt(uniqueRuleCount);
+        out.writeVInt(duplicateRuleCount);
+        out.writeInt(termCount);
+        out.writeVInt(outputCount);
+        out.writeVLong(fstBytes);
+        out.writeList(sources);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        builder.field("index", index);
+        builder.field("filter", filter);
+        builder.field("location", location);
+        builder.field("ready", ready);
+        builder.field("version", version);
+        if (hash != null) {
+            builder.field("hash", hash);
+            builder.timeField("updated_time_in_millis", "updated_time", timestamp);
+        }
+        builder.field("rules", ruleCount);
+        builder.field("unique_rules", uniqueRuleCount);
+        builder.field("duplicate_rules", duplicateRuleCount);
+        if (termCount >= 0) {
+            builder.field("terms", termCount);
+        }
+        builder.field("outputs", outputCount);
+        builder.humanReadableField("fst_size_in_bytes", "fst_size", ByteSizeValue.ofBytes(fstBytes));
+        builder.startArray("sources");
+        for (Source source : sources) {
+            source.toXContent(builder, params);
+        }
+        builder.endArray();
+        return builder.endObject();
+    }
+
+    /**
+     * Health of one source of the filter.
+     */
+    public static class Source implements Writeable, ToXContentObject {
+
+        private final String location;
+        private final SourceHealth.State state;
+        private final int consecutiveFailures;
+        private final long nextAttemptMillis;
+        private final String lastError;
+
+        Source(SourceHealth health) {
+            this.location = health.getLocation();
+            this.state = health.getState();
+            this.consecutiveFailures = health.getConsecutiveFailures();
+            this.nextAttemptMillis = health.getNextAttemptMillis();
+            this.lastError = health.getLastError();
+        }
+
+        public Source(StreamInput in) throws IOException {
+            this.location = in.readString();
+            this.state = in.readEnum(SourceHealth.State.class);
+            this.consecutiveFailures = in.readVInt();
+            this.nextAttemptMillis = in.readVLong();
+            this.lastError = in.readOptionalString();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(location);
+            out.writeEnum(state);
+            out.writeVInt(consecutiveFailures);
+            out.writeVLong(nextAttemptMillis);
+            out.writeOptionalString(lastError);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.field("location", location);
+            builder.field("health", state.toString());
+            builder.field("consecutive_failures", consecutiveFailures);
+            if (consecutiveFailures > 0) {
+                builder.timeField("next_attempt_time_in_millis", "next_attempt_time", nextAttemptMillis);
+                builder.field("last_error", lastError);
+            }
+            return builder.endObject();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+/**
+ * Version of the rules a synonym map was built from: a counter increased on
+ * every change of the rules, the content hash of the rules and when they were
+ * applied. Nodes serving the same hash serve the same synonyms.
+ *
+ * @author bellszhu
+ */
+final class SynonymVersion {
+
+    static final SynonymVersion NONE = new SynonymVersion(0, null, 0);
+
+    private final long version;
+    private final String hash;
+    private final long timestamp;
+
+    private SynonymVersion(long version, String hash, long timestamp) {
+        this.version = version;
+        this.hash = hash;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @return the version of the given rules, this version if they are the same.
+     */
+    SynonymVersion next(String hash) {
+        if (hash.equals(this.hash)) {
+            return this;
+        }
+        return new SynonymVersion(version + 1, hash, System.currentTimeMillis());
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the sha256 of the rules, null before the first build.
+     */
+    String getHash() {
+        return hash;
+    }
+
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "version [" + version + "], hash [" + hash + "]";
+    }
+}
@@ -0,0 +1,96 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.util.Comparator;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Builds the synonym maps of the filters with {@code warmup} enabled in the
+ * background, with a bounded number of threads, so that node startup does not
+ * parse every rule set inline with shard recovery.
+ * <p>
+ * Filters of indices with a higher {@code index.priority} are built first,
+ * then the most recently created indices.
+ *
+ * @author bellszhu
+ */
+public final class SynonymWarmer {
+
+    private static final Logger logger = LogManager.getLogger("dynamic-synonym");
+
+    private static final AtomicInteger id = new AtomicInteger(1);
+    private static final AtomicLong sequence = new AtomicLong();
+
+    private static final Comparator<Task> ORDER = Comparator.<Task>comparingInt(task -> task.priority).reversed()
+            .thenComparing(Comparator.<Task>comparingLong(task -> task.creationDate).reversed())
+            .thenComparingLong(task -> task.sequence);
+
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            2, 2, 60, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(64, (a, b) -> ORDER.compare((Task) a, (Task) b)), r -> {
+        Thread thread = new Thread(r);
+        thread.setName("synonym-warmup-" + id.getAndAdd(1));
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // the threads are only needed while nodes start or indices are created
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private SynonymWarmer() {
+    }
+
+    public static void setThreads(int threads) {
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+    }
+
+    static void submit(String description, int priority, long creationDate, Runnable build) {
+        executor.execute(new Task(description, priority, creationDate, sequence.incrementAndGet(), build));
+    }
+
+    /**
+     * @return the number of builds waiting for a thread.
+     */
+    public static int pending() {
+        return executor.getQueue().size();
+    }
+
+    private static final class Task implements Runnable {
+
+        private final String description;
+        private final int priority;
+        private final long creationDate;
+        private final long sequence;
+        private final Runnable build;
+
+        Task(String description, int priority, long creationDate, long sequence, Runnable build) {
+            this.description = description;
+            this.priority = priority;
+            this.creationDate = creationDate;
+            this.sequence = sequence;
+            this.build = build;
+        }
+
+        @Override
+        public void run() {
+            try {
+                build.run();
+            } catch (Exception e) {
+                logger.error("failed to warm up synonyms {}", description, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import org.apache.lucene.util.Attribute;
+
+/**
+ * Tenant whose synonyms apply to the token, set by {@link TenantMarkerFilter}
+ * or by any filter before the synonym filter. It is cleared with the other
+ * attributes, so it has to be set on every token.
+ *
+ * @author bellszhu
+ */
+public interface TenantAttribute extends Attribute {
+
+    /**
+     * @return the tenant, null for the default synonyms.
+     */
+    String getTenant();
+
+    void setTenant(String tenant);
+}
@@ -0,0 +1,55 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.util.Objects;
+
+import org.apache.lucene.util.AttributeImpl;
+import org.apache.lucene.util.AttributeReflector;
+
+/**
+ * @author bellszhu
+ */
+public class TenantAttributeImpl extends AttributeImpl implements TenantAttribute {
+
+    private String tenant;
+
+    @Override
+    public String getTenant() {
+        return tenant;
+    }
+
+    @Override
+    public void setTenant(String tenant) {
+        this.tenant = tenant;
+    }
+
+    /**
+     * The tenant applies to the whole stream, the filter setting it sets it again on every token.
+     */
+    @Override
+    public void clear() {
+        tenant = null;
+    }
+
+    @Override
+    public void reflectWith(AttributeReflector reflector) {
+        reflector.reflect(TenantAttribute.class, "tenant", tenant);
+    }
+
+    @Override
+    public void copyTo(AttributeImpl target) {
+        ((TenantAttribute) target).setTenant(tenant);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        return other instanceof TenantAttributeImpl && Objects.equals(tenant, ((TenantAttributeImpl) other).tenant);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(tenant);
+    }
+}
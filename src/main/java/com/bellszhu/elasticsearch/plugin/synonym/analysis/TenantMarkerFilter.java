@@ -0,0 +1,60 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.FilteringTokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+/**
+ * Removes the marker tokens, e.g. {@code __tenant_acme}, and sets the tenant
+ * they name on the following tokens of the stream. The positions of the
+ * removed markers are added to the next token, like any removed token.
+ * <p>
+ * The markers are read from the text itself, so whoever writes the text picks
+ * the tenant: the marker selects synonyms, it is no access control.
+ *
+ * @author bellszhu
+ */
+public final class TenantMarkerFilter extends FilteringTokenFilter {
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final TenantAttribute tenantAtt = addAttribute(TenantAttribute.class);
+
+    private final String prefix;
+
+    private String tenant;
+
+    public TenantMarkerFilter(TokenStream input, String prefix) {
+        super(input);
+        this.prefix = prefix;
+    }
+
+    @Override
+    protected boolean accept() {
+        if (isMarker()) {
+            tenant = termAtt.subSequence(prefix.length(), termAtt.length()).toString();
+            return false;
+        }
+        tenantAtt.setTenant(tenant);
+        return true;
+    }
+
+    private boolean isMarker() {
+        if (termAtt.length() <= prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (termAtt.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        tenant = null;
+    }
+}
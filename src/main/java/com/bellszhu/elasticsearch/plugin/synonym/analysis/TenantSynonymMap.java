@@ -0,0 +1,65 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.util.Map;
+
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.fst.FST;
+
+/**
+ * Default synonym map of a filter together with the maps of its tenants, the
+ * filters pick the map of the tenant of each match.
+ *
+ * @author bellszhu
+ */
+final class TenantSynonymMap extends SynonymMap {
+
+    private final SynonymMap defaultMap;
+    private final Map<String, SynonymMap> tenants;
+
+    TenantSynonymMap(SynonymMap defaultMap, Map<String, SynonymMap> tenants) {
+        // any FST tells the filters that some tenant has synonyms
+        super(firstFst(defaultMap, tenants), new BytesRefHash(), maxHorizontalContext(defaultMap, tenants));
+        this.defaultMap = defaultMap;
+        this.tenants = tenants;
+    }
+
+    SynonymMap getDefaultMap() {
+        return defaultMap;
+    }
+
+    Map<String, SynonymMap> getTenants() {
+        return tenants;
+    }
+
+    /**
+     * @return the map of the tenant, the default map for no or unknown tenants.
+     */
+    SynonymMap get(String tenant) {
+        if (tenant == null) {
+            return defaultMap;
+        }
+        return tenants.getOrDefault(tenant, defaultMap);
+    }
+
+    private static FST<BytesRef> firstFst(SynonymMap defaultMap, Map<String, SynonymMap> tenants) {
+        if (defaultMap.fst != null) {
+            return defaultMap.fst;
+        }
+        for (SynonymMap tenant : tenants.values()) {
+            if (tenant.fst != null) {
+                return tenant.fst;
+            }
+        }
+        return null;
+    }
+
+    private static int maxHorizontalContext(SynonymMap defaultMap, Map<String, SynonymMap> tenants) {
+        int max = defaultMap.maxHorizontalContext;
+        for (SynonymMap tenant : tenants.values()) {
+            max = Math.max(max, tenant.maxHorizontalContext);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,227 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.elasticsearch.analysis.common.ESSolrSynonymParser;
+
+/**
+ * Solr format parser accepting a weight on each output, e.g.
+ * {@code laptop => notebook^0.6}. The weight is kept in the output word after
+ * {@link #WEIGHT_SEPARATOR} as the four bytes of the float and emitted by the
+ * filters as the boost of the token. An escaped {@code \^} is part of the term.
+ *
+ * @author bellszhu
+ */
+public class WeightedSynonymParser extends ESSolrSynonymParser {
+
+    /**
+     * Separates an output word from its weight in the synonym map
+     */
+    static final char WEIGHT_SEPARATOR = '\u001E';
+
+    /**
+     * Each byte of the weight is stored in a char above this one, never a surrogate
+     */
+    private static final char WEIGHT_BYTE = '\u0100';
+
+    /**
+     * Length of the weight suffix of a weighted output word
+     */
+    static final int WEIGHT_LENGTH = 1 + Float.BYTES;
+
+    private static final Pattern WEIGHT = Pattern.compile("\\d*\\.?\\d+");
+
+    private static final String MAPPING = "=>";
+
+    /**
+     * Weights of the analyzed outputs of the rule being parsed
+     */
+    private Map<String, Float> weights = Map.of();
+
+    public WeightedSynonymParser(boolean dedup, boolean expand, boolean lenient, Analyzer analyzer) {
+        super(dedup, expand, lenient, analyzer);
+    }
+
+    /**
+     * Parse the rules without weights at once, then each rule with weights on its own.
+     */
+    @Override
+    public void parse(Reader in) throws IOException, ParseException {
+        String[] lines = readLines(in);
+        StringBuilder plain = new StringBuilder();
+        Map<Integer, Map<String, Float>> weighted = new LinkedHashMap<>();
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            Map<String, Float> lineWeights = new LinkedHashMap<>();
+            String rule;
+            try {
+                rule = stripWeights(line, lineWeights);
+            } catch (IllegalArgumentException e) {
+                ParseException ex = new ParseException("Invalid synonym rule at line " + (i + 1), 0);
+                ex.initCause(e);
+                throw ex;
+            }
+            if (rule != null) {
+                weighted.put(i, lineWeights);
+                lines[i] = rule;
+                // keep the line numbers of the parse errors
+                line = "";
+            }
+            plain.append(line).append('\n');
+        }
+        super.parse(new StringReader(plain.toString()));
+        for (Map.Entry<Integer, Map<String, Float>> rule : weighted.entrySet()) {
+            parseWeighted(lines[rule.getKey()], rule.getValue(), rule.getKey() + 1);
+        }
+    }
+
+    /**
+     * Take the weights off the terms of a rule, scanning it the way {@link SynonymRules} does.
+     *
+     * @param termWeights filled with the weight of each weighted term.
+     * @return the rule without the weights, null if it has none.
+     * @throws IllegalArgumentException if a weight is not positive.
+     */
+    static String stripWeights(String line, Map<String, Float> termWeights) {
+        String rule = line.trim();
+        if (rule.isEmpty() || rule.startsWith("#") || rule.indexOf('^') < 0) {
+            return null;
+        }
+        int arrow = SynonymRules.indexOfMapping(rule);
+        if (arrow < 0) {
+            List<String> terms = stripWeights(SynonymRules.split(rule), termWeights);
+            return termWeights.isEmpty() ? null : String.join(", ", terms);
+        }
+        List<String> inputs = stripWeights(SynonymRules.split(rule.substring(0, arrow)), termWeights);
+        List<String> outputs = stripWeights(SynonymRules.split(rule.substring(arrow + MAPPING.length())), termWeights);
+        return termWeights.isEmpty() ? null : String.join(", ", inputs) + " " + MAPPING + " " + String.join(", ", outputs);
+    }
+
+    private static List<String> stripWeights(List<String> terms, Map<String, Float> termWeights) {
+        List<String> stripped = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            int caret = -1;
+            for (int i = 0; i < term.length(); i++) {
+                char c = term.charAt(i);
+                if (c == '\\') {
+                    i++;
+                } else if (c == '^') {
+                    caret = i;
+                }
+            }
+            if (caret < 0 || !WEIGHT.matcher(term.substring(caret + 1)).matches()) {
+                stripped.add(term);
+                continue;
+            }
+            String name = term.substring(0, caret).trim();
+            float weight = Float.parseFloat(term.substring(caret + 1));
+            if (weight <= 0) {
+                throw new IllegalArgumentException("weight of [" + name + "] must be positive");
+            }
+            termWeights.put(name, weight);
+            stripped.add(name);
+        }
+        return stripped;
+    }
+
+    private void parseWeighted(String rule, Map<String, Float> termWeights, int lineNumber)
+            throws IOException, ParseException {
+        Map<String, Float> lineWeights = new HashMap<>();
+        CharsRefBuilder scratch = new CharsRefBuilder();
+        try {
+            for (Map.Entry<String, Float> term : termWeights.entrySet()) {
+                lineWeights.put(analyze(unescape(term.getKey()), scratch).toString(), term.getValue());
+            }
+            weights = lineWeights;
+            super.parse(new StringReader(rule));
+        } catch (IllegalArgumentException | ParseException e) {
+            ParseException ex = new ParseException("Invalid synonym rule at line " + lineNumber, 0);
+            ex.initCause(e);
+            throw ex;
+        } finally {
+            weights = Map.of();
+        }
+    }
+
+    @Override
+    public void add(CharsRef input, CharsRef output, boolean includeOrig) {
+        super.add(input, weighted(output), includeOrig);
+    }
+
+    /**
+     * @return the output followed by its weight, the output as is if it has none.
+     */
+    CharsRef weighted(CharsRef output) {
+        // most rules have no weights, skip the lookup key
+        if (weights.isEmpty()) {
+            return output;
+        }
+        Float weight = weights.get(output.toString());
+        if (weight == null || weight == 1f || output.length == 0) {
+            return output;
+        }
+        CharsRefBuilder builder = new CharsRefBuilder();
+        builder.copyChars(output);
+        builder.append(WEIGHT_SEPARATOR);
+        int bits = Float.floatToIntBits(weight);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            builder.append((char) (WEIGHT_BYTE + ((bits >>> shift) & 0xFF)));
+        }
+        return builder.toCharsRef();
+    }
+
+    /**
+     * Strip the weight off an output word, without allocating.
+     *
+     * @return the weight of the word, 1 if it has none.
+     */
+    static float stripWeight(CharsRef word) {
+        int start = word.offset + word.length - WEIGHT_LENGTH;
+        if (word.length <= WEIGHT_LENGTH || word.chars[start] != WEIGHT_SEPARATOR) {
+            return 1f;
+        }
+        int bits = 0;
+        for (int i = start + 1; i < start + WEIGHT_LENGTH; i++) {
+            bits = (bits << 8) | (word.chars[i] - WEIGHT_BYTE);
+        }
+        word.length -= WEIGHT_LENGTH;
+        return Float.intBitsToFloat(bits);
+    }
+
+    private static String unescape(String term) {
+        if (term.indexOf('\\') < 0) {
+            return term;
+        }
+        StringBuilder sb = new StringBuilder(term.length());
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (c == '\\' && i + 1 < term.length()) {
+                c = term.charAt(++i);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static String[] readLines(Reader in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            sb.append(buffer, 0, read);
+        }
+        return sb.toString().split("\\r?\\n", -1);
+    }
+}
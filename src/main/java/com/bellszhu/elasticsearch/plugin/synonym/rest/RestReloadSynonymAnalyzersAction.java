@@ -0,0 +1,45 @@
+package com.bellszhu.elasticsearch.plugin.synonym.rest;
+
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+import java.util.List;
+
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.internal.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestActions;
+
+import com.bellszhu.elasticsearch.plugin.synonym.action.ReloadSynonymAnalyzersAction;
+
+/**
+ * Reloads the search time analyzers at {@code POST /{index}/_dynamic_synonym/reload}.
+ *
+ * @author bellszhu
+ */
+public class RestReloadSynonymAnalyzersAction extends BaseRestHandler {
+
+    @Override
+    public String getName() {
+        return "dynamic_synonym_reload_action";
+    }
+
+    @Override
+    public List<Route> routes() {
+        return List.of(
+                new Route(POST, "/_dynamic_synonym/reload"),
+                new Route(POST, "/{index}/_dynamic_synonym/reload")
+        );
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+        String[] indices = Strings.splitStringByCommaToArray(request.param("index"));
+        ReloadSynonymAnalyzersAction.Request reloadRequest = new ReloadSynonymAnalyzersAction.Request(indices);
+        reloadRequest.indicesOptions(IndicesOptions.fromRequest(request, reloadRequest.indicesOptions()));
+        reloadRequest.timeout(request.param("timeout"));
+        return channel -> client.execute(ReloadSynonymAnalyzersAction.INSTANCE, reloadRequest,
+                new RestActions.NodesResponseRestListener<>(channel));
+    }
+}
@@ -0,0 +1,43 @@
+package com.bellszhu.elasticsearch.plugin.synonym.rest;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+
+import java.util.List;
+
+import org.elasticsearch.client.internal.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestActions;
+
+import com.bellszhu.elasticsearch.plugin.synonym.action.SynonymStatsAction;
+
+/**
+ * Exposes the state of the dynamic synonym filters at {@code GET /_dynamic_synonym/stats}.
+ *
+ * @author bellszhu
+ */
+public class RestSynonymStatsAction extends BaseRestHandler {
+
+    @Override
+    public String getName() {
+        return "dynamic_synonym_stats_action";
+    }
+
+    @Override
+    public List<Route> routes() {
+        return List.of(
+                new Route(GET, "/_dynamic_synonym/stats"),
+                new Route(GET, "/_dynamic_synonym/stats/{nodeId}")
+        );
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+        String[] nodesIds = Strings.splitStringByCommaToArray(request.param("nodeId"));
+        SynonymStatsAction.Request statsRequest = new SynonymStatsAction.Request(nodesIds);
+        statsRequest.timeout(request.param("timeout"));
+        return channel -> client.execute(SynonymStatsAction.INSTANCE, statsRequest,
+                new RestActions.NodesResponseRestListener<>(channel));
+    }
+}
@@ -0,0 +1,218 @@
+package com.bellszhu.elasticsearch.plugin.synonym.tool;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.custom.CustomAnalyzer;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymArtifact;
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymChainAnalyzer;
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymMapBuilder;
+
+/**
+ * Compiles a synonym file offline the way a node builds it, reports the build
+ * statistics and parse errors, and optionally writes the precompiled artifact
+ * loaded by filters with {@code format: binary}.
+ * <p>
+ * The analysis chain is given by Lucene names of the char filters, tokenizer
+ * and token filters and their parameters. It must match the types and settings
+ * of the chain the filter is used in, and produce the same tokens, for the
+ * artifact to be accepted.
+ *
+ * @author bellszhu
+ */
+public final class SynonymCompiler {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "usage: synonym-compiler [options] <synonyms file>",
+            "  --output <file>           write the compiled artifact",
+            "  --format <solr|wordnet>   format of the rules, default solr",
+            "  --char-filter <name>      char filter of the analysis chain, repeatable",
+            "  --tokenizer <name>        tokenizer of the analysis chain, default standard",
+            "  --filter <name>           token filter of the analysis chain, repeatable",
+            "  --param <key=value>       parameter of the last char filter, tokenizer or filter, repeatable",
+            "  --expand <true|false>     default true",
+            "  --lenient                 skip the rules that can not be parsed",
+            "  --deduplicate             drop duplicated rules",
+            "  --collapse-equivalences   merge equivalence rules sharing a term");
+
+    private Path input;
+    private Path output;
+    private String format = "";
+    private final List<Component> charFilters = new ArrayList<>();
+    private Component tokenizer = new Component("standard");
+    private final List<Component> filters = new ArrayList<>();
+    /**
+     * Component the next parameters belong to
+     */
+    private Component last;
+    private boolean expand = true;
+    private boolean lenient;
+    private boolean deduplicate;
+    private boolean collapseEquivalences;
+
+    private SynonymCompiler() {
+    }
+
+    public static void main(String[] args) {
+        SynonymCompiler compiler = new SynonymCompiler();
+        try {
+            compiler.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(64);
+        }
+        System.exit(compiler.run());
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--output":
+                    output = Paths.get(value(args, ++i, arg));
+                    break;
+                case "--format":
+                    format = value(args, ++i, arg);
+                    break;
+                case "--char-filter":
+                    last = new Component(value(args, ++i, arg));
+                    charFilters.add(last);
+                    break;
+                case "--tokenizer":
+                    last = tokenizer = new Component(value(args, ++i, arg));
+                    break;
+                case "--filter":
+                    last = new Component(value(args, ++i, arg));
+                    filters.add(last);
+                    break;
+                case "--param":
+                    String param = value(args, ++i, arg);
+                    int eq = param.indexOf('=');
+                    if (last == null || eq <= 0) {
+                        throw new IllegalArgumentException("--param takes key=value after a component, got [" + param + "]");
+                    }
+                    last.params.put(param.substring(0, eq), param.substring(eq + 1));
+                    break;
+                case "--expand":
+                    expand = Boolean.parseBoolean(value(args, ++i, arg));
+                    break;
+                case "--lenient":
+                    lenient = true;
+                    break;
+                case "--deduplicate":
+                    deduplicate = true;
+                    break;
+                case "--collapse-equivalences":
+                    collapseEquivalences = true;
+                    break;
+                case "-h":
+                case "--help":
+                    throw new IllegalArgumentException("");
+                default:
+                    if (arg.startsWith("-") || input != null) {
+                        throw new IllegalArgumentException("unknown argument [" + arg + "]");
+                    }
+                    input = Paths.get(arg);
+            }
+        }
+        if (input == null) {
+            throw new IllegalArgumentException("missing synonyms file");
+        }
+        if (SynonymArtifact.isBinary(format)) {
+            throw new IllegalArgumentException("the input must be text rules");
+        }
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("missing value of " + option);
+        }
+        return args[i];
+    }
+
+    private int run() {
+        try (Analyzer analyzer = analyzer()) {
+            String rules = Files.readString(input, StandardCharsets.UTF_8);
+            long start = System.nanoTime();
+            SynonymMapBuilder.Build build = new SynonymMapBuilder(format, expand, lenient, deduplicate, collapseEquivalences)
+                    .build(rules, analyzer);
+            SynonymMap synonymMap = build.getSynonymMap();
+            long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            print("rules", build.getRuleCount());
+            if (build.isPrepared()) {
+                print("unique_rules", build.getUniqueRuleCount());
+                print("duplicate_rules", build.getDuplicateCount());
+                print("terms", build.getTermCount());
+            }
+            print("outputs", synonymMap.fst == null ? 0 : synonymMap.words.size());
+            print("fst_size_in_bytes", synonymMap.fst == null ? 0 : synonymMap.fst.ramBytesUsed());
+            print("build_time_in_millis", took);
+            print("chain", SynonymArtifact.chain(analyzer));
+            print("fingerprint", SynonymArtifact.fingerprint(analyzer));
+
+            if (output != null) {
+                String artifact = SynonymArtifact.write(synonymMap, build.getUniqueRuleCount(), analyzer);
+                Files.writeString(output, artifact, StandardCharsets.UTF_8);
+                print("artifact", output.toAbsolutePath());
+                print("artifact_size_in_bytes", Files.size(output));
+            }
+            return 0;
+        } catch (ParseException e) {
+            // the message names the line of the invalid rule, the cause tells why
+            System.err.println(e.getMessage() + (e.getCause() == null ? "" : ": " + e.getCause().getMessage()));
+            return 1;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("failed to compile " + input + ": " + e);
+            return 1;
+        }
+    }
+
+    private Analyzer analyzer() throws IOException {
+        CustomAnalyzer.Builder builder = CustomAnalyzer.builder();
+        SynonymChainAnalyzer.Chain chain = new SynonymChainAnalyzer.Chain();
+        for (Component charFilter : charFilters) {
+            // the factories consume the parameters they know
+            builder.addCharFilter(charFilter.name, new HashMap<>(charFilter.params));
+            chain.add("char_filter", charFilter.name, charFilter.params);
+        }
+        builder.withTokenizer(tokenizer.name, new HashMap<>(tokenizer.params));
+        chain.add("tokenizer", tokenizer.name, tokenizer.params);
+        for (Component filter : filters) {
+            builder.addTokenFilter(filter.name, new HashMap<>(filter.params));
+            chain.add("filter", filter.name, filter.params);
+        }
+        return new SynonymChainAnalyzer(builder.build(), chain.toString());
+    }
+
+    private static void print(String name, Object value) {
+        System.out.println(name + ": " + value);
+    }
+
+    /**
+     * Char filter, tokenizer or token filter by its Lucene name.
+     */
+    private static final class Component {
+
+        private final String name;
+        private final Map<String, String> params = new LinkedHashMap<>();
+
+        Component(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -19,17 +19,38 @@ package com.bellszhu.elasticsearch.plugin;
 import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
 import org.elasticsearch.action.ActionFuture;
 import org.elasticsearch.action.admin.indices.analyze.AnalyzeAction;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.xcontent.XContentType;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.bellszhu.elasticsearch.plugin.synonym.action.ReloadSynonymAnalyzersAction;
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.DynamicSynonymTokenFilterFactory;
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymIndex;
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymMemory;
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymRegistry;
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymStats;
+
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 import static org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.newConfigs;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Create by guanquan.wang at 2019-09-18 16:55
@@ -57,13 +78,17 @@ public class DynamicSynonymPluginTest {
     }
 
     private void createIndexWithLocalSynonym(String indexName, String synonymType, String localPath) {
+        createIndexWithLocalSynonymSettings(indexName, synonymType, "\"" + localPath + "\"");
+    }
+
+    private void createIndexWithLocalSynonymSettings(String indexName, String synonymType, String synonymsPath) {
         final String indexSettings = "{\n" +
             "  \"index\":{\n" +
             "    \"analysis\":{\n" +
             "      \"filter\":{\n" +
             "        \"local_synonym\": {\n" +
             "            \"type\": \"" + synonymType + "\",\n" +
-            "            \"synonyms_path\": \"" + localPath + "\",\n" +
+            "            \"synonyms_path\": " + synonymsPath + ",\n" +
             "            \"interval\": \"10\"\n" +
             "        }"+
             "      },\n" +
@@ -163,6 +188,17 @@ public class DynamicSynonymPluginTest {
         return response.getTokens();
     }
 
+    /**
+     * @return the terms of the tokens, in any order.
+     */
+    private Set<String> terms(String indexName, String text) {
+        Set<String> terms = new HashSet<>();
+        for (AnalyzeAction.AnalyzeToken token : tokens(indexName, text)) {
+            terms.add(token.getTerm());
+        }
+        return terms;
+    }
+
     @Test
     public void testLocalAbsolute() {
         String index = "test_local_absolute";
@@ -235,6 +271,280 @@ public class DynamicSynonymPluginTest {
         }
     }
 
+    @Test
+    public void testLocalMultiple() {
+        String index = "test_local_multiple";
+        // create an index reading two files merged into one synonym map
+        createIndexWithLocalSynonymSettings(index, "dynamic_synonym",
+            "[\"synonym.txt\", \"synonym_extra.txt\"]");
+
+        assertEquals(Set.of("kfc", "金拱门", "肯德基"), terms(index, "kfc"));
+        assertEquals(Set.of("mcd", "麦当劳"), terms(index, "mcd"));
+    }
+
+    @Test
+    public void testInline() {
+        String index = "test_inline";
+        // no synonyms_path, the inline rules are static and not monitored
+        final String indexSettings = "{\n" +
+            "  \"index\":{\n" +
+            "    \"analysis\":{\n" +
+            "      \"filter\":{\n" +
+            "        \"inline_synonym\": {\n" +
+            "            \"type\": \"dynamic_synonym\",\n" +
+            "            \"synonyms\": [\"laptop, notebook\"]\n" +
+            "        }\n" +
+            "      },\n" +
+            "      \"analyzer\":{\n" +
+            "        \"synonym_analyzer\":{\n" +
+            "          \"filter\":[\n" +
+            "            \"lowercase\",\n" +
+            "            \"inline_synonym\"\n" +
+            "          ],\n" +
+            "          \"type\":\"custom\",\n" +
+            "          \"tokenizer\":\"keyword\"\n" +
+            "        }\n" +
+            "      }\n" +
+            "    }\n" +
+            "  }\n" +
+            "}";
+        runner.createIndex(index, Settings.builder().loadFromSource(indexSettings, XContentType.JSON).build());
+        runner.ensureYellow();
+
+        assertEquals(Set.of("laptop", "notebook"), terms(index, "laptop"));
+    }
+
+    @Test
+    public void testClosedIndexReleasesItsFilters() throws Exception {
+        String index = "test_released";
+        int monitors = DynamicSynonymTokenFilterFactory.scheduledMonitors();
+        createIndexWithLocalSynonym(index, "dynamic_synonym", "synonym.txt");
+        assertEquals(Set.of("kfc", "金拱门", "肯德基"), terms(index, "kfc"));
+        assertTrue(registered(index));
+        assertTrue("monitor not scheduled", await(() -> DynamicSynonymTokenFilterFactory.scheduledMonitors() == monitors + 1));
+
+        // closing the index stops the monitor and drops the filter from the registry
+        runner.admin().indices().prepareClose(index).get();
+        assertTrue("monitor still scheduled", await(() -> DynamicSynonymTokenFilterFactory.scheduledMonitors() == monitors));
+        assertFalse(registered(index));
+
+        // the reopened index has new filters, which are released when it is deleted
+        runner.admin().indices().prepareOpen(index).get();
+        runner.ensureYellow(index);
+        assertEquals(Set.of("kfc", "金拱门", "肯德基"), terms(index, "kfc"));
+        assertTrue(registered(index));
+        assertTrue("monitor not scheduled", await(() -> DynamicSynonymTokenFilterFactory.scheduledMonitors() == monitors + 1));
+
+        runner.deleteIndex(index);
+        assertTrue("monitor still scheduled", await(() -> DynamicSynonymTokenFilterFactory.scheduledMonitors() == monitors));
+        assertFalse(registered(index));
+    }
+
+    @Test
+    public void testIndexSource() throws Exception {
+        String index = "test_index_source";
+        runner.client().prepareIndex(SynonymIndex.INDEX_NAME).setId("rules")
+                .setSource(SynonymIndex.RULES_FIELD, "laptop, notebook")
+                .get();
+        createIndexWithLocalSynonym(index, "dynamic_synonym", "index://rules");
+        // the document is read asynchronously, the filter starts without rules
+        assertTrue("rules not read", await(() -> terms(index, "laptop").equals(Set.of("laptop", "notebook"))));
+
+        // a write on the local copy notifies the filter, no need to wait for the interval
+        runner.client().prepareIndex(SynonymIndex.INDEX_NAME).setId("rules")
+                .setSource(SynonymIndex.RULES_FIELD, "laptop, ultrabook")
+                .get();
+        assertTrue("rules not reloaded", await(() -> terms(index, "laptop").equals(Set.of("laptop", "ultrabook"))));
+    }
+
+    @Test
+    public void testLazyFirstUse() throws Exception {
+        String index = "test_lazy";
+        Path synonymFile = Files.createTempFile("lazy_synonym", ".txt");
+        try {
+            Files.writeString(synonymFile, "laptop, notebook\n", StandardCharsets.UTF_8);
+            createLazyIndex(index, synonymFile);
+            // nothing is built until the analyzer is used
+            assertFalse(stats(index).isReady());
+
+            assertEquals(Set.of("laptop", "notebook"), terms(index, "laptop"));
+            assertTrue(stats(index).isReady());
+            assertNotNull(stats(index).getHash());
+        } finally {
+            Files.deleteIfExists(synonymFile);
+        }
+    }
+
+    @Test
+    public void testLazyFailure() throws Exception {
+        String index = "test_lazy_failure";
+        Path synonymFile = Files.createTempFile("lazy_synonym", ".txt");
+        try {
+            Files.writeString(synonymFile, "laptop => notebook => ultrabook\n", StandardCharsets.UTF_8);
+            createLazyIndex(index, synonymFile);
+
+            // the rules can not be parsed, the analyzer works without synonyms and does not build again
+            for (int i = 0; i < 3; i++) {
+                assertEquals(Set.of("laptop"), terms(index, "laptop"));
+            }
+            assertTrue(stats(index).isReady());
+            assertNull(stats(index).getHash());
+
+            // the monitor applies the fixed rules
+            Files.writeString(synonymFile, "laptop, notebook\n", StandardCharsets.UTF_8);
+            assertTrue("fixed rules not applied",
+                    await(() -> terms(index, "laptop").equals(Set.of("laptop", "notebook"))));
+        } finally {
+            Files.deleteIfExists(synonymFile);
+        }
+    }
+
+    @Test
+    public void testReloadAnalyzers() throws Exception {
+        String index = "test_reload_analyzers";
+        Path synonymFile = Files.createTempFile("reloaded_synonym", ".txt");
+        try {
+            Files.writeString(synonymFile, "laptop, notebook\n", StandardCharsets.UTF_8);
+            runner.createIndex(index, Settings.builder()
+                    .put("index.analysis.filter.reloaded_synonym.type", "dynamic_synonym")
+                    .put("index.analysis.filter.reloaded_synonym.synonyms_path", synonymFile.toAbsolutePath().toString())
+                    .put("index.analysis.filter.reloaded_synonym.updateable", true)
+                    .put("index.analysis.filter.reloaded_synonym.reload", "analyzers")
+                    .put("index.analysis.analyzer.synonym_analyzer.type", "custom")
+                    .put("index.analysis.analyzer.synonym_analyzer.tokenizer", "keyword")
+                    .putList("index.analysis.analyzer.synonym_analyzer.filter", "lowercase", "reloaded_synonym")
+                    .build());
+            runner.ensureYellow(index);
+            assertEquals(Set.of("laptop", "notebook"), terms(index, "laptop"));
+
+            // no monitor, the change is only read when the analyzers are reloaded
+            Files.writeString(synonymFile, "laptop, ultrabook\n", StandardCharsets.UTF_8);
+            assertEquals(Set.of("laptop", "notebook"), terms(index, "laptop"));
+
+            ReloadSynonymAnalyzersAction.Response response = runner.client()
+                    .execute(ReloadSynonymAnalyzersAction.INSTANCE, new ReloadSynonymAnalyzersAction.Request(index))
+                    .actionGet(10L, TimeUnit.SECONDS);
+            assertEquals(List.of(), response.failures());
+            assertEquals(List.of("synonym_analyzer"), response.getNodes().get(0).getAnalyzers().get(index));
+            assertEquals(Set.of("laptop", "ultrabook"), terms(index, "laptop"));
+            // the filter of the replaced analyzer is released right away
+            SynonymRegistry registry = runner.getNode(0).injector().getInstance(SynonymRegistry.class);
+            assertEquals(1, registry.stats().stream().filter(stats -> index.equals(stats.getIndex())).count());
+        } finally {
+            Files.deleteIfExists(synonymFile);
+        }
+    }
+
+    @Test
+    public void testRejectedReloadKeepsServing() throws Exception {
+        String index = "test_rejected_reload";
+        Path synonymFile = Files.createTempFile("validated_synonym", ".txt");
+        try {
+            Files.writeString(synonymFile, "laptop, notebook\nphone, mobile\n", StandardCharsets.UTF_8);
+            runner.createIndex(index, Settings.builder()
+                    .put("index.analysis.filter.validated_synonym.type", "dynamic_synonym")
+                    .put("index.analysis.filter.validated_synonym.synonyms_path", synonymFile.toAbsolutePath().toString())
+                    .put("index.analysis.filter.validated_synonym.interval", 1)
+                    .put("index.analysis.filter.validated_synonym.min_rules", 2)
+                    .put("index.analysis.analyzer.synonym_analyzer.type", "custom")
+                    .put("index.analysis.analyzer.synonym_analyzer.tokenizer", "keyword")
+                    .putList("index.analysis.analyzer.synonym_analyzer.filter", "lowercase", "validated_synonym")
+                    .build());
+            runner.ensureYellow(index);
+            assertEquals(Set.of("laptop", "notebook"), terms(index, "laptop"));
+            String hash = stats(index).getHash();
+            assertNotNull(hash);
+
+            // rules that can not be parsed, the current map keeps serving
+            Files.writeString(synonymFile, "laptop => notebook => ultrabook\nphone, mobile\n", StandardCharsets.UTF_8);
+            Thread.sleep(3000);
+            assertEquals(Set.of("laptop", "notebook"), terms(index, "laptop"));
+            assertEquals(hash, stats(index).getHash());
+
+            // fewer rules than min_rules, the current map keeps serving
+            Files.writeString(synonymFile, "laptop, ultrabook\n", StandardCharsets.UTF_8);
+            Thread.sleep(3000);
+            assertEquals(Set.of("laptop", "notebook"), terms(index, "laptop"));
+            assertEquals(hash, stats(index).getHash());
+
+            // valid rules are swapped in
+            Files.writeString(synonymFile, "laptop, ultrabook\nphone, mobile\n", StandardCharsets.UTF_8);
+            assertTrue("valid rules not applied",
+                    await(() -> terms(index, "laptop").equals(Set.of("laptop", "ultrabook"))));
+            assertNotEquals(hash, stats(index).getHash());
+        } finally {
+            Files.deleteIfExists(synonymFile);
+        }
+    }
+
+    @Test
+    public void testBreakerFollowsTheServedMap() throws Exception {
+        String index = "test_breaker";
+        CircuitBreaker breaker = runner.getNode(0).injector().getInstance(CircuitBreakerService.class)
+                .getBreaker(SynonymMemory.BREAKER_NAME);
+        assertEquals(0, breaker.getUsed());
+        Path synonymFile = Files.createTempFile("charged_synonym", ".txt");
+        try {
+            Files.writeString(synonymFile, "laptop, notebook\n", StandardCharsets.UTF_8);
+            createLazyIndex(index, synonymFile);
+            assertEquals(Set.of("laptop", "notebook"), terms(index, "laptop"));
+            String hash = stats(index).getHash();
+            long used = breaker.getUsed();
+            assertTrue(used > 0);
+
+            // the new map is charged instead of the former one, the build reservation is released
+            Files.writeString(synonymFile, "laptop, notebook\nnew york, nyc\ntv, television\n", StandardCharsets.UTF_8);
+            assertTrue("new rules not applied", await(() -> terms(index, "tv").contains("television")));
+            assertTrue(breaker.getUsed() > used);
+
+            Files.writeString(synonymFile, "laptop, notebook\n", StandardCharsets.UTF_8);
+            assertTrue("former rules not applied", await(() -> hash.equals(stats(index).getHash())));
+            assertEquals(used, breaker.getUsed());
+
+            runner.deleteIndex(index);
+            assertTrue("map still charged", await(() -> breaker.getUsed() == 0));
+        } finally {
+            Files.deleteIfExists(synonymFile);
+        }
+    }
+
+    private void createLazyIndex(String indexName, Path synonymFile) {
+        runner.createIndex(indexName, Settings.builder()
+                .put("index.analysis.filter.lazy_synonym.type", "dynamic_synonym")
+                .put("index.analysis.filter.lazy_synonym.synonyms_path", synonymFile.toAbsolutePath().toString())
+                .put("index.analysis.filter.lazy_synonym.lazy", true)
+                .put("index.analysis.filter.lazy_synonym.interval", 1)
+                .put("index.analysis.analyzer.synonym_analyzer.type", "custom")
+                .put("index.analysis.analyzer.synonym_analyzer.tokenizer", "keyword")
+                .putList("index.analysis.analyzer.synonym_analyzer.filter", "lowercase", "lazy_synonym")
+                .build());
+        runner.ensureYellow(indexName);
+    }
+
+    private SynonymStats stats(String indexName) {
+        SynonymRegistry registry = runner.getNode(0).injector().getInstance(SynonymRegistry.class);
+        return registry.stats().stream()
+                .filter(stats -> indexName.equals(stats.getIndex()))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no filter of " + indexName));
+    }
+
+    private boolean registered(String indexName) {
+        SynonymRegistry registry = runner.getNode(0).injector().getInstance(SynonymRegistry.class);
+        return registry.stats().stream().anyMatch(stats -> indexName.equals(stats.getIndex()));
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(200);
+        }
+        return true;
+    }
+
     @Test
     public void testRemote() throws InterruptedException {
         String index = "test_remote";
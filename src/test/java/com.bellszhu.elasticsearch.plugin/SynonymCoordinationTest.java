@@ -0,0 +1,182 @@
+package com.bellszhu.elasticsearch.plugin;
+
+import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
+import org.elasticsearch.action.admin.indices.analyze.AnalyzeAction;
+import org.elasticsearch.common.hash.MessageDigests;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.Index;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bellszhu.elasticsearch.plugin.synonym.action.SynonymCoordinator;
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymRegistry;
+import com.bellszhu.elasticsearch.plugin.synonym.analysis.SynonymStats;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.newConfigs;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Coordinated filters on a cluster of three nodes: the nodes that missed the
+ * rules of the designated node catch up with them, and the rules the
+ * designated node pushes reach every node.
+ *
+ * @author bellszhu
+ */
+public class SynonymCoordinationTest {
+    private ElasticsearchClusterRunner runner;
+    private Path synonymFile;
+
+    @Before
+    public void setUp() throws IOException {
+        runner = new ElasticsearchClusterRunner();
+        runner.build(newConfigs()
+                .numOfNode(3)
+                .pluginTypes("com.bellszhu.elasticsearch.plugin.DynamicSynonymPlugin")
+        );
+        runner.ensureGreen();
+        synonymFile = Files.createTempFile("coordinated_synonym", ".txt");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        runner.close();
+        runner.clean();
+        Files.deleteIfExists(synonymFile);
+    }
+
+    @Test
+    public void testFollowersCatchUpWithTheDesignatedNode() throws Exception {
+        String index = "test_coordinated";
+        Files.writeString(synonymFile, "foo, bar\n", StandardCharsets.UTF_8);
+        // a single copy: only the designated node, which holds the primary, reads the rules
+        runner.createIndex(index, Settings.builder()
+                .put("index.number_of_shards", 1)
+                .put("index.number_of_replicas", 0)
+                .put("index.analysis.filter.coordinated_synonym.type", "dynamic_synonym")
+                .put("index.analysis.filter.coordinated_synonym.synonyms_path", synonymFile.toAbsolutePath().toString())
+                .put("index.analysis.filter.coordinated_synonym.coordinated", true)
+                .put("index.analysis.filter.coordinated_synonym.interval", 3600)
+                .put("index.analysis.analyzer.synonym_analyzer.type", "custom")
+                .put("index.analysis.analyzer.synonym_analyzer.tokenizer", "keyword")
+                .putList("index.analysis.analyzer.synonym_analyzer.filter", "lowercase", "coordinated_synonym")
+                .build());
+        runner.ensureGreen(index);
+        // let the designated node settle before the source changes behind its back
+        Thread.sleep(2000);
+        assertEquals(List.of("foo", "bar"), terms(index, "foo"));
+
+        // the new copies read the changed source when they start, then take the rules of the designated node
+        Files.writeString(synonymFile, "foo, baz\n", StandardCharsets.UTF_8);
+        runner.admin().indices().prepareUpdateSettings(index)
+                .setSettings(Settings.builder().put("index.number_of_replicas", 2))
+                .get();
+        runner.ensureGreen(index);
+
+        // every node holds a copy, each of them serves the rules of the designated node
+        assertTrue("followers did not catch up", await(() -> servesEverywhere(index, "foo, bar\n")));
+        assertEquals(List.of(), mismatches(index, List.of("foo", "bar")));
+
+        // the rules the designated node pushes are applied by the other nodes, which never read the source
+        SynonymRegistry designated = designatedRegistry(index);
+        designated.getCoordinator().push(SynonymCoordinator.id(index(index), "coordinated_synonym"), "foo, qux\n");
+        assertTrue("pushed rules did not reach every node", await(() -> servesEverywhere(index, "foo, qux\n")));
+        assertEquals(List.of(), mismatches(index, List.of("foo", "qux")));
+    }
+
+    /**
+     * @return true if the filter of every node holding a copy serves the given rules.
+     */
+    private boolean servesEverywhere(String indexName, String rules) {
+        String hash = MessageDigests.toHexString(MessageDigests.sha256().digest(rules.getBytes(StandardCharsets.UTF_8)));
+        for (int i = 0; i < runner.getNodeSize(); i++) {
+            List<SynonymStats> stats = new ArrayList<>();
+            for (SynonymStats filter : registry(i).stats()) {
+                if (indexName.equals(filter.getIndex())) {
+                    stats.add(filter);
+                }
+            }
+            assertFalse("node " + i + " holds no copy", stats.isEmpty());
+            for (SynonymStats filter : stats) {
+                if (!hash.equals(filter.getHash())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private List<String> mismatches(String indexName, List<String> expected) {
+        List<String> mismatches = new ArrayList<>();
+        // the analyze requests are spread over the copies of the shard
+        for (int i = 0; i < 30; i++) {
+            List<String> terms = terms(indexName, "foo");
+            if (!expected.equals(terms)) {
+                mismatches.add(String.valueOf(terms));
+            }
+        }
+        return mismatches;
+    }
+
+    private SynonymRegistry designatedRegistry(String indexName) {
+        Index index = index(indexName);
+        for (int i = 0; i < runner.getNodeSize(); i++) {
+            if (registry(i).getCoordinator().isDesignatedNode(index)) {
+                return registry(i);
+            }
+        }
+        throw new AssertionError("no designated node for " + indexName);
+    }
+
+    private SynonymRegistry registry(int node) {
+        return runner.getNode(node).injector().getInstance(SynonymRegistry.class);
+    }
+
+    private Index index(String indexName) {
+        return runner.clusterService().state().metadata().index(indexName).getIndex();
+    }
+
+    private static boolean await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline || !sleep()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sleep() {
+        try {
+            Thread.sleep(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    private List<String> terms(String indexName, String text) {
+        AnalyzeAction.Request analyzeRequest = new AnalyzeAction.Request(indexName);
+        analyzeRequest.text(text);
+        analyzeRequest.analyzer("synonym_analyzer");
+        AnalyzeAction.Response response = runner.admin().indices().analyze(analyzeRequest)
+                .actionGet(10L, TimeUnit.SECONDS);
+        List<String> terms = new ArrayList<>();
+        for (AnalyzeAction.AnalyzeToken token : response.getTokens()) {
+            terms.add(token.getTerm());
+        }
+        return terms;
+    }
+}
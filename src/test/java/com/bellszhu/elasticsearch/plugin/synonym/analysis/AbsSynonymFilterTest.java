@@ -0,0 +1,117 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Selection of the outputs of a match within the limits of {@code max_outputs_per_match}
+ * and {@code max_expansions}.
+ *
+ * @author bellszhu
+ */
+public class AbsSynonymFilterTest {
+
+    private SynonymMap synonyms;
+    /**
+     * Word ids of the outputs, in rule order
+     */
+    private final List<Integer> outputs = new ArrayList<>();
+    private final Map<Integer, String> words = new HashMap<>();
+
+    @Before
+    public void setUp() throws Exception {
+        try (Analyzer analyzer = new WhitespaceAnalyzer()) {
+            WeightedSynonymParser parser = new WeightedSynonymParser(true, true, false, analyzer);
+            parser.parse(new StringReader("laptop => notebook^0.6, ultrabook, netbook^0.8, chromebook^0.8\n"));
+            synonyms = parser.build();
+        }
+        AbsSynonymFilter filter = filter(Integer.MAX_VALUE, false, Integer.MAX_VALUE);
+        Map<String, Integer> ids = new HashMap<>();
+        for (int id = 0; id < synonyms.words.size(); id++) {
+            String word = filter.outputWord(synonyms, id).toString();
+            ids.put(word, id);
+            words.put(id, word);
+        }
+        for (String word : List.of("notebook", "ultrabook", "netbook", "chromebook")) {
+            outputs.add(ids.get(word));
+        }
+    }
+
+    @Test
+    public void testUnlimited() throws Exception {
+        AbsSynonymFilter filter = filter(Integer.MAX_VALUE, false, Integer.MAX_VALUE);
+        assertEquals(List.of("notebook", "ultrabook", "netbook", "chromebook"), select(filter));
+    }
+
+    @Test
+    public void testFirstInRuleOrder() throws Exception {
+        AbsSynonymFilter filter = filter(2, false, Integer.MAX_VALUE);
+        assertEquals(List.of("notebook", "ultrabook"), select(filter));
+    }
+
+    @Test
+    public void testHeaviestWithTiesInRuleOrder() throws Exception {
+        AbsSynonymFilter filter = filter(3, true, Integer.MAX_VALUE);
+        assertEquals(List.of("ultrabook", "netbook", "chromebook"), select(filter));
+    }
+
+    @Test
+    public void testExpansionsOfTheStream() throws Exception {
+        AbsSynonymFilter filter = filter(Integer.MAX_VALUE, false, 6);
+        assertEquals(4, select(filter).size());
+        assertEquals(List.of("notebook", "ultrabook"), select(filter));
+        // none left, the match keeps its original tokens
+        assertEquals(List.of(), select(filter));
+
+        filter.reset();
+        assertEquals(4, select(filter).size());
+    }
+
+    private List<String> select(AbsSynonymFilter filter) {
+        byte[] bytes = new byte[5 * outputs.size()];
+        ByteArrayDataOutput out = new ByteArrayDataOutput(bytes);
+        for (int id : outputs) {
+            out.writeVInt(id);
+        }
+        int selected = filter.selectOutputs(synonyms, new ByteArrayDataInput(bytes, 0, out.getPosition()), outputs.size());
+        List<String> selectedWords = new ArrayList<>();
+        for (int i = 0; i < selected; i++) {
+            selectedWords.add(words.get(filter.matchOutput(i)));
+        }
+        return selectedWords;
+    }
+
+    private static AbsSynonymFilter filter(int maxOutputsPerMatch, boolean outputsByWeight, int maxExpansions)
+            throws Exception {
+        Tokenizer tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(new StringReader(""));
+        AbsSynonymFilter filter = new AbsSynonymFilter(tokenizer) {
+            @Override
+            void update(SynonymMap synonymMap) {
+            }
+
+            @Override
+            public boolean incrementToken() {
+                return false;
+            }
+        };
+        filter.limitOutputs(maxOutputsPerMatch, outputsByWeight, maxExpansions);
+        filter.reset();
+        return filter;
+    }
+}
@@ -0,0 +1,59 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRef;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author bellszhu
+ */
+public class CompactSynonymMapTest {
+
+    @Test
+    public void testWordsAreKeptInOrder() throws Exception {
+        SynonymMap.Builder builder = new SynonymMap.Builder(true);
+        builder.add(new CharsRef("tv"), new CharsRef("television"), true);
+        builder.add(new CharsRef("cafe"), new CharsRef("café"), true);
+        builder.add(new CharsRef("smile"), new CharsRef("😀"), false);
+        builder.add(new CharsRef("nihao"), new CharsRef("你好"), false);
+        SynonymMap map = builder.build();
+
+        SynonymMap compact = CompactSynonymMap.compact(map);
+        assertEquals(map.words.size(), CompactSynonymMap.wordCount(compact));
+        assertEquals(0, compact.words.size());
+        assertSame(map.fst, compact.fst);
+        assertEquals(map.maxHorizontalContext, compact.maxHorizontalContext);
+
+        BytesRef bytes = new BytesRef();
+        CharsRef spare = new CharsRef();
+        char[] pool = null;
+        for (int i = 0; i < map.words.size(); i++) {
+            map.words.get(i, bytes);
+            assertEquals(bytes.utf8ToString(), ((CompactSynonymMap) compact).word(i, spare).toString());
+            // every word points into the same decoded chars, nothing is copied on a hit
+            if (pool != null) {
+                assertSame(pool, spare.chars);
+            }
+            pool = spare.chars;
+        }
+    }
+
+    @Test
+    public void testEmptyMapIsKept() throws Exception {
+        SynonymMap map = new SynonymMap.Builder(true).build();
+        assertSame(map, CompactSynonymMap.compact(map));
+        assertEquals(0, CompactSynonymMap.wordCount(map));
+    }
+
+    @Test
+    public void testCompactMapIsKept() throws Exception {
+        SynonymMap.Builder builder = new SynonymMap.Builder(true);
+        builder.add(new CharsRef("a"), new CharsRef("b"), true);
+        SynonymMap compact = CompactSynonymMap.compact(builder.build());
+        assertSame(compact, CompactSynonymMap.compact(compact));
+    }
+}
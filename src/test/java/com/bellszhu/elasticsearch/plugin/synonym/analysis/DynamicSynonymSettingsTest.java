@@ -0,0 +1,87 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.analysis.AnalysisMode;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bellszhu
+ */
+public class DynamicSynonymSettingsTest {
+
+    @Test
+    public void testDefaults() {
+        DynamicSynonymSettings settings = new DynamicSynonymSettings(Settings.builder()
+                .putList("synonyms", "a, b")
+                .build());
+
+        assertEquals("synonyms", settings.getLocation());
+        assertEquals(60, settings.getInterval());
+        assertTrue(settings.isExpand());
+        assertFalse(settings.isReloadAnalyzers());
+        assertEquals(AnalysisMode.ALL, settings.getAnalysisMode());
+        assertEquals(Integer.MAX_VALUE, settings.getMaxOutputsPerMatch());
+        assertEquals(Integer.MAX_VALUE, settings.getMaxExpansions());
+        assertEquals(600_000L, settings.getMaxBackoffMillis());
+        assertEquals(600, settings.getWatchInterval());
+        assertNull(settings.newPartitionedBuilder());
+    }
+
+    @Test
+    public void testTenants() {
+        DynamicSynonymSettings settings = new DynamicSynonymSettings(Settings.builder()
+                .putList("synonyms_path", "a.txt", "b.txt")
+                .putList("tenants.acme.synonyms_path", "acme.txt")
+                .put("partitions", 4)
+                .build());
+
+        assertEquals("a.txt,b.txt", settings.getLocation());
+        assertEquals(Map.of("acme", List.of("acme.txt")), settings.getTenants());
+        assertNotSame(settings.newPartitionedBuilder(), settings.newPartitionedBuilder());
+    }
+
+    @Test
+    public void testInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new DynamicSynonymSettings(Settings.EMPTY));
+        assertThrows(IllegalArgumentException.class, () -> settings("partitions", "0"));
+        assertThrows(IllegalArgumentException.class, () -> settings("reload", "never"));
+        assertThrows(IllegalArgumentException.class, () -> settings("reload", "analyzers"));
+        assertThrows(IllegalArgumentException.class, () -> settings("max_expansions", "-1"));
+        assertThrows(IllegalArgumentException.class, () -> settings("watch_interval", "0"));
+        assertThrows(IllegalArgumentException.class, () -> settings("max_outputs_order", "random"));
+        assertThrows(IllegalArgumentException.class, () -> new DynamicSynonymSettings(Settings.builder()
+                .putList("synonyms", "a, b")
+                .putList("tenants.acme.synonyms", "c, d")
+                .build()));
+    }
+
+    @Test
+    public void testCheckRuleCount() {
+        DynamicSynonymSettings settings = new DynamicSynonymSettings(Settings.builder()
+                .putList("synonyms", "a, b")
+                .put("min_rules", 2)
+                .put("min_rules_ratio", 0.5)
+                .build());
+
+        assertEquals(6, settings.checkRuleCount("a.txt", 6, 10));
+        assertThrows(IllegalArgumentException.class, () -> settings.checkRuleCount("a.txt", 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> settings.checkRuleCount("a.txt", 4, 10));
+    }
+
+    private static DynamicSynonymSettings settings(String key, String value) {
+        return new DynamicSynonymSettings(Settings.builder()
+                .putList("synonyms", "a, b")
+                .put(key, value)
+                .build());
+    }
+}
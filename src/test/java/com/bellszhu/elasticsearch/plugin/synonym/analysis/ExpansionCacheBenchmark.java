@@ -0,0 +1,89 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.synonym.SolrSynonymParser;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+
+/**
+ * Time of the analysis of a skewed set of queries by a reused graph filter,
+ * with and without the {@link ExpansionCache}. Not a unit test, run it with
+ * the test classpath:
+ * <pre>
+ * java -cp target/test-classes:target/classes:... \
+ *     com.bellszhu.elasticsearch.plugin.synonym.analysis.ExpansionCacheBenchmark [rules] [cache size]
+ * </pre>
+ *
+ * @author bellszhu
+ */
+public class ExpansionCacheBenchmark {
+
+    private static final int QUERIES = 10_000;
+    private static final int ITERATIONS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int ruleCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int cacheSize = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+
+        Random random = new Random(42);
+        StringBuilder rules = new StringBuilder();
+        for (int i = 0; i < ruleCount; i++) {
+            rules.append("word").append(i).append(" term").append(i)
+                    .append(", synonym").append(i).append('\n');
+        }
+        SynonymMap synonyms;
+        try (Analyzer analyzer = new WhitespaceAnalyzer()) {
+            SolrSynonymParser parser = new SolrSynonymParser(true, true, analyzer);
+            parser.parse(new StringReader(rules.toString()));
+            synonyms = parser.build();
+        }
+
+        // a few hundred hot queries make up most of the traffic
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            int id = (int) Math.min(ruleCount - 1, Math.abs(random.nextGaussian()) * 200);
+            queries.add("cheap word" + id + " term" + id + " online");
+        }
+
+        System.out.println("rules=" + ruleCount + " queries=" + QUERIES + " cache=" + cacheSize);
+        for (int round = 0; round < 3; round++) {
+            System.out.printf("fst:   %,d ns/query%n", run(synonyms, null, queries));
+            ExpansionCache cache = new ExpansionCache(cacheSize);
+            cache.swap(synonyms);
+            System.out.printf("cache: %,d ns/query%n", run(synonyms, cache, queries));
+        }
+    }
+
+    private static long run(SynonymMap synonyms, ExpansionCache cache, List<String> queries) throws Exception {
+        Tokenizer tokenizer = new WhitespaceTokenizer();
+        DynamicSynonymGraphFilter filter = new DynamicSynonymGraphFilter(tokenizer, synonyms, false);
+        if (cache != null) {
+            filter.cacheExpansions(cache);
+        }
+        long tokens = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String query : queries) {
+                tokenizer.setReader(new StringReader(query));
+                filter.reset();
+                while (filter.incrementToken()) {
+                    tokens++;
+                }
+                filter.end();
+                filter.close();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (tokens == 0) {
+            throw new IllegalStateException("no tokens");
+        }
+        return elapsed / ((long) ITERATIONS * queries.size());
+    }
+}
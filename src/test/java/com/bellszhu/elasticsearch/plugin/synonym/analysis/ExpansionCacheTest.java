@@ -0,0 +1,144 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.synonym.SolrSynonymParser;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The graph filter emits the same tokens whether its matches come from the
+ * {@link ExpansionCache} or from the FST.
+ *
+ * @author bellszhu
+ */
+public class ExpansionCacheTest {
+
+    private static final String RULES = "laptop, notebook\n"
+            + "new york, nyc\n"
+            + "new york city => big apple\n"
+            + "new jersey, nj\n";
+
+    private static final List<String> QUERIES = List.of(
+            "cheap laptop",
+            "new york hotels",
+            "new york city",
+            "new jersey",
+            "new york",
+            "new",
+            "new york city tours",
+            "something new");
+
+    @Test
+    public void testSameTokensAsWithoutCache() throws Exception {
+        SynonymMap synonyms = synonyms(RULES);
+        ExpansionCache cache = new ExpansionCache(64);
+        cache.swap(synonyms);
+        for (int round = 0; round < 3; round++) {
+            for (String query : QUERIES) {
+                assertEquals(query, analyze(synonyms, null, query), analyze(synonyms, cache, query));
+            }
+        }
+    }
+
+    @Test
+    public void testReusedFilter() throws Exception {
+        SynonymMap synonyms = synonyms(RULES);
+        ExpansionCache cache = new ExpansionCache(1);
+        cache.swap(synonyms);
+        Tokenizer tokenizer = new WhitespaceTokenizer();
+        DynamicSynonymGraphFilter filter = new DynamicSynonymGraphFilter(tokenizer, synonyms, false);
+        filter.cacheExpansions(cache);
+        // a single slot, every query replaces the walk cached by the former one
+        for (int round = 0; round < 3; round++) {
+            for (String query : QUERIES) {
+                tokenizer.setReader(new StringReader(query));
+                assertEquals(query, analyze(synonyms, null, query), tokens(filter));
+            }
+        }
+    }
+
+    @Test
+    public void testSwapInvalidates() throws Exception {
+        SynonymMap synonyms = synonyms(RULES);
+        ExpansionCache cache = new ExpansionCache(16);
+        cache.swap(synonyms);
+        long generation = cache.generation(synonyms);
+        char[] laptop = "laptop".toCharArray();
+        cache.put(generation, null, laptop, new int[]{laptop.length}, new byte[]{1}, 1);
+        assertNotNull(cache.get(generation, null, laptop, laptop.length));
+        assertNull(cache.get(generation, "acme", laptop, laptop.length));
+
+        SynonymMap reloaded = synonyms("laptop, ultrabook\n");
+        cache.swap(reloaded);
+        assertEquals(ExpansionCache.NONE, cache.generation(synonyms));
+        assertNull(cache.get(cache.generation(reloaded), null, laptop, laptop.length));
+        // a filter still on the former map neither reads nor adds entries
+        assertEquals(analyze(synonyms, null, "cheap laptop"), analyze(synonyms, cache, "cheap laptop"));
+        assertEquals(analyze(reloaded, null, "cheap laptop"), analyze(reloaded, cache, "cheap laptop"));
+    }
+
+    @Test
+    public void testTokenEquals() {
+        ExpansionCache cache = new ExpansionCache(3);
+        assertEquals(4, cache.size());
+        char[] tokens = "newyork".toCharArray();
+        cache.put(1, null, tokens, new int[]{3, 7}, null, 0);
+        ExpansionCache.Entry entry = cache.get(1, null, "new".toCharArray(), 3);
+        assertNotNull(entry);
+        assertEquals(2, entry.examined());
+        assertEquals(true, entry.tokenEquals(1, "york".toCharArray(), 4));
+        assertEquals(false, entry.tokenEquals(1, "yorkshire".toCharArray(), 9));
+        assertNull(entry.output());
+        assertNull(cache.get(1, null, "ne".toCharArray(), 2));
+    }
+
+    private static SynonymMap synonyms(String rules) throws Exception {
+        try (Analyzer analyzer = new WhitespaceAnalyzer()) {
+            SolrSynonymParser parser = new SolrSynonymParser(true, true, analyzer);
+            parser.parse(new StringReader(rules));
+            return parser.build();
+        }
+    }
+
+    private static List<String> analyze(SynonymMap synonyms, ExpansionCache cache, String text) throws Exception {
+        Tokenizer tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(new StringReader(text));
+        DynamicSynonymGraphFilter filter = new DynamicSynonymGraphFilter(tokenizer, synonyms, false);
+        if (cache != null) {
+            filter.cacheExpansions(cache);
+        }
+        return tokens(filter);
+    }
+
+    private static List<String> tokens(TokenStream stream) throws Exception {
+        CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+        PositionIncrementAttribute posInc = stream.addAttribute(PositionIncrementAttribute.class);
+        PositionLengthAttribute posLen = stream.addAttribute(PositionLengthAttribute.class);
+        OffsetAttribute offset = stream.addAttribute(OffsetAttribute.class);
+        List<String> tokens = new ArrayList<>();
+        stream.reset();
+        while (stream.incrementToken()) {
+            tokens.add(term + "/" + posInc.getPositionIncrement() + "/" + posLen.getPositionLength()
+                    + "/" + offset.startOffset() + "-" + offset.endOffset());
+        }
+        stream.end();
+        stream.close();
+        return tokens;
+    }
+}
@@ -0,0 +1,101 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.synonym.SolrSynonymParser;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * A reused filter picks up the current map of its factory when it is reset.
+ *
+ * @author bellszhu
+ */
+public class FollowSynonymsTest {
+
+    @Test
+    public void testSynonymFilter() throws Exception {
+        SynonymMap notebook = synonyms("laptop, notebook\n");
+        AtomicReference<SynonymMap> current = new AtomicReference<>(notebook);
+        Tokenizer tokenizer = new WhitespaceTokenizer();
+        DynamicSynonymFilter filter = new DynamicSynonymFilter(tokenizer, notebook, false);
+        filter.followSynonyms(current::get);
+        assertEquals(2, filter.getRollBufferCapacity());
+        assertEquals(Set.of("laptop", "notebook"), terms(tokenizer, filter, "laptop"));
+
+        // swapped between two token streams, the next reset serves the new map
+        current.set(synonyms("laptop, ultrabook\n"));
+        assertEquals(Set.of("laptop", "ultrabook"), terms(tokenizer, filter, "laptop"));
+        assertEquals(2, filter.getRollBufferCapacity());
+
+        // a longer match grows the buffers
+        current.set(synonyms("laptop, ultrabook\nnew york city, nyc\n"));
+        assertEquals(Set.of("nyc", "new", "york", "city"), terms(tokenizer, filter, "nyc"));
+        int capacity = filter.getRollBufferCapacity();
+        assertEquals(4, capacity);
+
+        // a shorter one reuses them
+        current.set(notebook);
+        assertEquals(Set.of("laptop", "notebook"), terms(tokenizer, filter, "laptop"));
+        assertEquals(Set.of("nyc"), terms(tokenizer, filter, "nyc"));
+        assertEquals(capacity, filter.getRollBufferCapacity());
+
+        // released factory, the filter keeps its map
+        current.set(null);
+        assertEquals(Set.of("laptop", "notebook"), terms(tokenizer, filter, "laptop"));
+    }
+
+    @Test
+    public void testSynonymGraphFilter() throws Exception {
+        SynonymMap notebook = synonyms("laptop, notebook\n");
+        AtomicReference<SynonymMap> current = new AtomicReference<>(notebook);
+        Tokenizer tokenizer = new WhitespaceTokenizer();
+        DynamicSynonymGraphFilter filter = new DynamicSynonymGraphFilter(tokenizer, notebook, false);
+        filter.followSynonyms(current::get);
+        assertEquals(Set.of("laptop", "notebook"), terms(tokenizer, filter, "laptop"));
+
+        current.set(synonyms("laptop, ultrabook\nnew york city, nyc\n"));
+        assertEquals(Set.of("laptop", "ultrabook"), terms(tokenizer, filter, "laptop"));
+        assertEquals(Set.of("nyc", "new", "york", "city"), terms(tokenizer, filter, "nyc"));
+        assertEquals(Set.of("nyc", "new", "york", "city", "tours"), terms(tokenizer, filter, "new york city tours"));
+
+        current.set(notebook);
+        assertEquals(Set.of("new", "york", "city", "tours"), terms(tokenizer, filter, "new york city tours"));
+        assertEquals(Set.of("laptop", "notebook"), terms(tokenizer, filter, "laptop"));
+
+        current.set(null);
+        assertEquals(Set.of("laptop", "notebook"), terms(tokenizer, filter, "laptop"));
+    }
+
+    private static SynonymMap synonyms(String rules) throws Exception {
+        try (Analyzer analyzer = new WhitespaceAnalyzer()) {
+            SolrSynonymParser parser = new SolrSynonymParser(true, true, analyzer);
+            parser.parse(new StringReader(rules));
+            return parser.build();
+        }
+    }
+
+    private static Set<String> terms(Tokenizer tokenizer, TokenStream stream, String text) throws Exception {
+        tokenizer.setReader(new StringReader(text));
+        CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+        Set<String> terms = new HashSet<>();
+        stream.reset();
+        while (stream.incrementToken()) {
+            terms.add(term.toString());
+        }
+        stream.end();
+        stream.close();
+        return terms;
+    }
+}
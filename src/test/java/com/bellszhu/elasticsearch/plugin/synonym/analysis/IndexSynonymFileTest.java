@@ -0,0 +1,69 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.Reader;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.elasticsearch.index.seqno.SequenceNumbers;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Rules of a document of the synonym index, as known by the node.
+ *
+ * @author bellszhu
+ */
+public class IndexSynonymFileTest {
+
+    @Test
+    public void testMissingDocumentIsNotProvisional() throws Exception {
+        SynonymIndex synonymIndex = new SynonymRegistry().getSynonymIndex();
+        try (Analyzer analyzer = new WhitespaceAnalyzer()) {
+            IndexSynonymFile file = new IndexSynonymFile(synonymIndex, null, analyzer, true, false, "",
+                    "index://rules", false);
+            // not read yet, the node has no client in this test
+            assertTrue(file.isProvisional());
+            assertEquals("", read(file.getReader()));
+            assertTrue(file.isProvisional());
+            assertThrows(IllegalStateException.class, file::isNeedReloadSynonymMap);
+
+            // read, but the document does not exist
+            synonymIndex.update("rules", new SynonymIndex.Document("", SequenceNumbers.UNASSIGNED_SEQ_NO,
+                    SequenceNumbers.UNASSIGNED_PRIMARY_TERM));
+            assertEquals("", read(file.getReader()));
+            assertFalse(file.isProvisional());
+            assertFalse(file.isNeedReloadSynonymMap());
+
+            // written later
+            synonymIndex.update("rules", new SynonymIndex.Document("foo, bar\n", 0, 1));
+            assertTrue(file.isNeedReloadSynonymMap());
+            assertEquals("foo, bar\n", read(file.getReader()));
+            assertFalse(file.isNeedReloadSynonymMap());
+            assertFalse(file.isProvisional());
+        }
+    }
+
+    @Test
+    public void testOlderDocumentIsIgnored() {
+        SynonymIndex synonymIndex = new SynonymRegistry().getSynonymIndex();
+        synonymIndex.update("rules", new SynonymIndex.Document("foo, baz\n", 3, 1));
+        synonymIndex.update("rules", new SynonymIndex.Document("foo, bar\n", 2, 1));
+        assertEquals("foo, baz\n", synonymIndex.document("rules").rules);
+        synonymIndex.update("rules", new SynonymIndex.Document("foo, qux\n", 0, 2));
+        assertEquals("foo, qux\n", synonymIndex.document("rules").rules);
+    }
+
+    private static String read(Reader reader) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[256];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            sb.append(buffer, 0, read);
+        }
+        return sb.toString();
+    }
+}
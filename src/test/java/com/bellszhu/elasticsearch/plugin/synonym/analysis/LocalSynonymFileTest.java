@@ -0,0 +1,84 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Change detection of a local synonym file: by modification time and size,
+ * then by the SHA-256 of the content.
+ *
+ * @author bellszhu
+ */
+public class LocalSynonymFileTest {
+
+    private static final FileTime MODIFIED = FileTime.fromMillis(1_600_000_000_000L);
+
+    private Path dir;
+    private Path file;
+    private Environment environment;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("local-synonym");
+        file = dir.resolve("synonym.txt");
+        environment = new Environment(Settings.builder().put("path.home", dir.toString()).build(), dir);
+        write("laptop, notebook\n");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void testSizeChangeWithSameModificationTime() throws Exception {
+        LocalSynonymFile synonymFile = new LocalSynonymFile(environment, null, true, false, "", file.toString());
+        assertFalse(synonymFile.isNeedReloadSynonymMap());
+
+        // written twice within the timestamp granularity
+        write("laptop, ultrabook\n");
+        assertTrue(synonymFile.isNeedReloadSynonymMap());
+        assertFalse(synonymFile.isNeedReloadSynonymMap());
+    }
+
+    @Test
+    public void testSameContentIsNotReloaded() throws Exception {
+        LocalSynonymFile synonymFile = new LocalSynonymFile(environment, null, true, false, "", file.toString());
+
+        // touched
+        Files.setLastModifiedTime(file, FileTime.fromMillis(MODIFIED.toMillis() + 1000));
+        assertFalse(synonymFile.isNeedReloadSynonymMap());
+
+        // rewritten with the same rules
+        write("laptop, notebook\n");
+        assertFalse(synonymFile.isNeedReloadSynonymMap());
+    }
+
+    @Test
+    public void testWatchedFileComparesTheContent() throws Exception {
+        LocalSynonymFile synonymFile = new LocalSynonymFile(environment, null, true, false, "", file.toString(), true);
+        assertFalse(synonymFile.isNeedReloadSynonymMap());
+
+        // same size and modification time, only the content hash differs
+        write("laptop, netbooks\n");
+        assertTrue(synonymFile.isNeedReloadSynonymMap());
+        assertFalse(synonymFile.isNeedReloadSynonymMap());
+    }
+
+    private void write(String rules) throws Exception {
+        Files.writeString(file, rules, StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, MODIFIED);
+    }
+}
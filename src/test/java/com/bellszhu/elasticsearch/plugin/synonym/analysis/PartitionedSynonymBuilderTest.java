@@ -0,0 +1,68 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.StringReader;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.util.CharsRef;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bellszhu
+ */
+public class PartitionedSynonymBuilderTest {
+
+    private static final int PARTITIONS = 8;
+
+    @Test
+    public void testOnlyChangedPartitionsAreRebuilt() throws Exception {
+        PartitionedSynonymBuilder builder = new PartitionedSynonymBuilder(PARTITIONS, "", true, false);
+        try (Analyzer analyzer = new WhitespaceAnalyzer()) {
+            SynonymMap[] first = build(builder, "a, b\nc, d\ne, f\ng, h\n", analyzer);
+            SynonymMap[] second = build(builder, "a, b\nc, x\ne, f\ng, h\n", analyzer);
+
+            // the rules starting with c, d and x changed
+            Set<Integer> changed = Set.of(partition("c"), partition("d"), partition("x"));
+            assertTrue(changed.size() < PARTITIONS);
+            for (int i = 0; i < PARTITIONS; i++) {
+                if (changed.contains(i)) {
+                    assertNotSame(first[i], second[i]);
+                } else {
+                    assertSame(first[i], second[i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAnotherAnalyzerRebuildsAll() throws Exception {
+        PartitionedSynonymBuilder builder = new PartitionedSynonymBuilder(PARTITIONS, "", true, false);
+        String rules = "a, b\nc, d\n";
+        SynonymMap[] first;
+        SynonymMap[] second;
+        try (Analyzer analyzer = new WhitespaceAnalyzer()) {
+            first = build(builder, rules, analyzer);
+        }
+        try (Analyzer analyzer = new WhitespaceAnalyzer()) {
+            second = build(builder, rules, analyzer);
+        }
+        for (int i = 0; i < PARTITIONS; i++) {
+            assertNotSame(first[i], second[i]);
+        }
+    }
+
+    private static SynonymMap[] build(PartitionedSynonymBuilder builder, String rules, Analyzer analyzer) throws Exception {
+        SynonymMap map = builder.build(new StringReader(rules), analyzer, "test");
+        return ((PartitionedSynonymMap) map).getPartitions();
+    }
+
+    private static int partition(String input) {
+        return PartitionedSynonymMap.partition(new CharsRef(input), PARTITIONS);
+    }
+}
@@ -0,0 +1,77 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bellszhu
+ */
+public class SourceHealthTest {
+
+    @Test
+    public void testBackoffDoublesUpToTheMax() {
+        SourceHealth health = SourceHealth.acquire("test://backoff", 1000, 5000, 10);
+        try {
+            assertTrue(health.tryAttempt(0));
+            health.onFailure(0, new IOException("down"));
+            assertEquals(1000, health.getNextAttemptMillis());
+            assertEquals(SourceHealth.State.YELLOW, health.getState());
+            assertFalse(health.tryAttempt(999));
+
+            // the attempt is reserved for the next period, other factories wait
+            assertTrue(health.tryAttempt(1000));
+            assertFalse(health.tryAttempt(1000));
+            health.onFailure(1000, new IOException("down"));
+            assertEquals(3000, health.getNextAttemptMillis());
+            health.onFailure(3000, new IOException("down"));
+            assertEquals(7000, health.getNextAttemptMillis());
+            health.onFailure(7000, new IOException("down"));
+            assertEquals(12000, health.getNextAttemptMillis());
+            assertEquals("java.io.IOException: down", health.getLastError());
+
+            health.onSuccess();
+            assertEquals(SourceHealth.State.GREEN, health.getState());
+            assertEquals(0, health.getConsecutiveFailures());
+            assertNull(health.getLastError());
+            assertTrue(health.tryAttempt(12000));
+        } finally {
+            health.release();
+        }
+    }
+
+    @Test
+    public void testThresholdOpensTheCircuit() {
+        SourceHealth health = SourceHealth.acquire("test://threshold", 1000, 60000, 2);
+        try {
+            health.onFailure(0, new IOException("down"));
+            assertEquals(1000, health.getNextAttemptMillis());
+            health.onFailure(1000, new IOException("down"));
+            assertEquals(SourceHealth.State.RED, health.getState());
+            assertEquals(61000, health.getNextAttemptMillis());
+        } finally {
+            health.release();
+        }
+    }
+
+    @Test
+    public void testSharedPerLocation() {
+        SourceHealth first = SourceHealth.acquire("test://shared", 1000, 5000, 10);
+        SourceHealth second = SourceHealth.acquire("test://shared", 2000, 9000, 3);
+        assertSame(first, second);
+        second.release();
+        assertSame(first, SourceHealth.acquire("test://shared", 1000, 5000, 10));
+        first.release();
+        first.release();
+        SourceHealth third = SourceHealth.acquire("test://shared", 1000, 5000, 10);
+        assertNotSame(first, third);
+        third.release();
+    }
+}
@@ -0,0 +1,107 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bellszhu
+ */
+public class SynonymArtifactTest {
+
+    private static final String RULES = "tv, television\nlaptop => notebook^0.6, ultrabook\n";
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        try (Analyzer analyzer = analyzer(whitespace())) {
+            SynonymMap map = build(analyzer);
+            String artifact = SynonymArtifact.write(map, 2, analyzer);
+
+            SynonymMap read = SynonymArtifact.read(new StringReader(artifact), analyzer);
+            assertEquals(map.maxHorizontalContext, read.maxHorizontalContext);
+            assertEquals(map.words.size(), read.words.size());
+            BytesRef expected = new BytesRef();
+            BytesRef actual = new BytesRef();
+            for (int i = 0; i < map.words.size(); i++) {
+                assertEquals(map.words.get(i, expected), read.words.get(i, actual));
+            }
+            assertEquals(map.fst.ramBytesUsed(), read.fst.ramBytesUsed());
+            assertEquals(2, SynonymArtifact.ruleCount(artifact));
+        }
+    }
+
+    @Test
+    public void testEmptyArtifact() throws Exception {
+        try (Analyzer analyzer = new WhitespaceAnalyzer()) {
+            assertNull(SynonymArtifact.read(new StringReader(" \n"), analyzer).fst);
+            assertEquals(0, SynonymArtifact.ruleCount(""));
+        }
+    }
+
+    @Test
+    public void testOtherChainIsRejected() throws Exception {
+        // both chains produce the same tokens for the rules and the probes, only their settings differ
+        try (Analyzer compiled = analyzer(whitespace().add("filter", "stop", Map.of("ignoreCase", "true")));
+             Analyzer used = analyzer(whitespace().add("filter", "stop", Map.of("ignore_case", "false")))) {
+            String artifact = SynonymArtifact.write(build(compiled), 2, compiled);
+            assertNotEquals(SynonymArtifact.fingerprint(compiled), SynonymArtifact.fingerprint(used));
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> SynonymArtifact.read(new StringReader(artifact), used));
+            assertTrue(e.getMessage(), e.getMessage().contains("filter:stop(ignorecase=true)"));
+        }
+    }
+
+    @Test
+    public void testSettingNamesAreNormalized() throws Exception {
+        try (Analyzer lucene = analyzer(whitespace().add("filter", "stop", Map.of("ignoreCase", "true")));
+             Analyzer elasticsearch = analyzer(whitespace().add("filter", "stop", Map.of("ignore_case", "true")))) {
+            assertEquals(SynonymArtifact.fingerprint(lucene), SynonymArtifact.fingerprint(elasticsearch));
+        }
+    }
+
+    @Test
+    public void testRuleCountReadsOnlyTheHeader() throws Exception {
+        try (Analyzer analyzer = analyzer(whitespace())) {
+            byte[] bytes = Base64.getMimeDecoder().decode(SynonymArtifact.write(build(analyzer), 2, analyzer));
+            // the words and the FST are cut off, only a full read notices
+            String truncated = Base64.getMimeEncoder().encodeToString(Arrays.copyOf(bytes, bytes.length - 10));
+            assertEquals(2, SynonymArtifact.ruleCount(truncated));
+            assertThrows(IOException.class, () -> SynonymArtifact.read(new StringReader(truncated), analyzer));
+        }
+    }
+
+    @Test
+    public void testCorruptedArtifactFailsTheRuleCount() {
+        assertThrows(IOException.class, () -> SynonymArtifact.ruleCount("bm90IGFuIGFydGlmYWN0"));
+        assertThrows(IOException.class, () -> SynonymArtifact.ruleCount("not base64!"));
+    }
+
+    private static SynonymChainAnalyzer.Chain whitespace() {
+        return new SynonymChainAnalyzer.Chain().add("tokenizer", "whitespace", Map.of());
+    }
+
+    /**
+     * @return a whitespace analyzer described as the given chain.
+     */
+    private static Analyzer analyzer(SynonymChainAnalyzer.Chain chain) {
+        return new SynonymChainAnalyzer(new WhitespaceAnalyzer(), chain.toString());
+    }
+
+    private static SynonymMap build(Analyzer analyzer) throws Exception {
+        return new SynonymMapBuilder("", true, false, false, false).build(RULES, analyzer).getSynonymMap();
+    }
+}
@@ -0,0 +1,45 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bellszhu
+ */
+public class SynonymFileWatcherTest {
+
+    @Test
+    public void testFailingListenerDoesNotStopTheWatcher() throws Exception {
+        Path dir = Files.createTempDirectory("synonym-watcher");
+        Path file = dir.resolve("synonym.txt");
+        Files.writeString(file, "a, b\n", StandardCharsets.UTF_8);
+        Runnable failing = () -> {
+            throw new IllegalStateException("could not read synonyms");
+        };
+        Semaphore notified = new Semaphore(0);
+        Runnable listener = notified::release;
+        try {
+            assertTrue(SynonymFileWatcher.watch(file, failing));
+            assertTrue(SynonymFileWatcher.watch(file, listener));
+
+            // whatever the order of the listeners, the thread still runs after the failure
+            for (String rules : new String[]{"a, c\n", "a, d\n"}) {
+                Files.writeString(file, rules, StandardCharsets.UTF_8);
+                assertTrue("listener not notified", notified.tryAcquire(30, TimeUnit.SECONDS));
+                notified.drainPermits();
+            }
+        } finally {
+            SynonymFileWatcher.unwatch(file, failing);
+            SynonymFileWatcher.unwatch(file, listener);
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bellszhu
+ */
+public class SynonymMapBuilderTest {
+
+    private static final String RULES = "# comment\na, b\n\nb, a\nx => y\n";
+
+    @Test
+    public void testCountRules() {
+        assertEquals(3, SynonymMapBuilder.countRules(RULES));
+        assertEquals(0, SynonymMapBuilder.countRules("\n  \n# a, b\n"));
+    }
+
+    @Test
+    public void testDeduplicatedBuild() throws Exception {
+        try (Analyzer analyzer = new WhitespaceAnalyzer()) {
+            SynonymMapBuilder.Build build = new SynonymMapBuilder("", true, false, true, false).build(RULES, analyzer);
+            assertTrue(build.isPrepared());
+            assertEquals(3, build.getRuleCount());
+            assertEquals(2, build.getUniqueRuleCount());
+            assertEquals(1, build.getDuplicateCount());
+            assertEquals(3, build.getSynonymMap().words.size());
+        }
+    }
+
+    @Test
+    public void testWordnetIsParsedAsIs() throws Exception {
+        try (Analyzer analyzer = new WhitespaceAnalyzer()) {
+            SynonymMapBuilder.Build build = new SynonymMapBuilder("wordnet", true, false, true, false)
+                    .build("s(100000001,1,'a',n,1,0).\ns(100000001,2,'b',n,1,0).\n", analyzer);
+            assertFalse(build.isPrepared());
+            assertEquals(2, build.getRuleCount());
+            assertEquals(2, build.getUniqueRuleCount());
+            assertEquals(0, build.getDuplicateCount());
+        }
+    }
+}
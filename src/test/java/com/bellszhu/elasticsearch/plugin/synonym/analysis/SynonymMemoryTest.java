@@ -0,0 +1,107 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bellszhu
+ */
+public class SynonymMemoryTest {
+
+    private static final String RULES = "laptop, notebook\nnew york, nyc\n";
+
+    @After
+    public void tearDown() {
+        SynonymMemory.setBreaker(new NoopCircuitBreaker(SynonymMemory.BREAKER_NAME));
+    }
+
+    @Test
+    public void testBuildReservationIsReleased() {
+        CountingBreaker breaker = new CountingBreaker(Long.MAX_VALUE);
+        SynonymMemory.setBreaker(breaker);
+        SynonymMapBuilder mapBuilder = new SynonymMapBuilder("", true, false, false, false);
+        try (Analyzer analyzer = new WhitespaceAnalyzer()) {
+            mapBuilder.buildCompact(RULES, analyzer, null, "synonyms");
+            assertTrue(breaker.peak >= RULES.length());
+            assertEquals(0, breaker.getUsed());
+
+            // released when the rules can not be parsed too
+            assertThrows(IllegalArgumentException.class,
+                    () -> mapBuilder.buildCompact("a => b => c\n", analyzer, null, "synonyms"));
+            assertEquals(0, breaker.getUsed());
+        }
+    }
+
+    @Test
+    public void testBuildIsRejectedBeforeParsing() {
+        CountingBreaker breaker = new CountingBreaker(RULES.length());
+        SynonymMemory.setBreaker(breaker);
+        SynonymMapBuilder mapBuilder = new SynonymMapBuilder("", true, false, false, false);
+        try (Analyzer analyzer = new WhitespaceAnalyzer()) {
+            assertThrows(CircuitBreakingException.class,
+                    () -> mapBuilder.buildCompact(RULES, analyzer, null, "synonyms"));
+            assertEquals(0, breaker.getUsed());
+        }
+    }
+
+    @Test
+    public void testResidentMapIsChargedUntilReplaced() throws Exception {
+        CountingBreaker breaker = new CountingBreaker(0);
+        SynonymMemory.setBreaker(breaker);
+        SynonymMapBuilder mapBuilder = new SynonymMapBuilder("", true, false, false, false);
+        try (Analyzer analyzer = new WhitespaceAnalyzer()) {
+            long current = SynonymMemory.ramBytesUsed(mapBuilder.build(RULES, analyzer).getSynonymMap());
+            long next = SynonymMemory.ramBytesUsed(mapBuilder.build(RULES + "tv, television\n", analyzer).getSynonymMap());
+            assertTrue(next > current);
+
+            // resident maps are never rejected, a swap only moves the charge
+            SynonymMemory.adjust(current);
+            assertEquals(current, breaker.getUsed());
+            SynonymMemory.adjust(next - current);
+            assertEquals(next, breaker.getUsed());
+            SynonymMemory.adjust(-next);
+            assertEquals(0, breaker.getUsed());
+        }
+        assertEquals(0, SynonymMemory.ramBytesUsed(null));
+    }
+
+    private static final class CountingBreaker extends NoopCircuitBreaker {
+
+        private final long limit;
+        private long used;
+        private long peak;
+
+        CountingBreaker(long limit) {
+            super(SynonymMemory.BREAKER_NAME);
+            this.limit = limit;
+        }
+
+        @Override
+        public void addEstimateBytesAndMaybeBreak(long bytes, String label) throws CircuitBreakingException {
+            if (used + bytes > limit) {
+                throw new CircuitBreakingException("[" + getName() + "] " + label + " would use " + (used + bytes),
+                        used + bytes, limit, getDurability());
+            }
+            addWithoutBreaking(bytes);
+        }
+
+        @Override
+        public void addWithoutBreaking(long bytes) {
+            used += bytes;
+            peak = Math.max(peak, used);
+        }
+
+        @Override
+        public long getUsed() {
+            return used;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author bellszhu
+ */
+public class SynonymPollerTest {
+
+    @After
+    public void tearDown() {
+        SynonymPoller.setVirtualThreads(false);
+    }
+
+    @Test
+    public void testPollsOnTheCallingThreadByDefault() {
+        assertFalse(SynonymPoller.setVirtualThreads(false));
+
+        AtomicReference<Thread> ran = new AtomicReference<>();
+        SynonymPoller.execute(() -> ran.set(Thread.currentThread()), () -> {
+            throw new AssertionError("aborted");
+        });
+        assertEquals(Thread.currentThread(), ran.get());
+    }
+
+    @Test
+    public void testFallsBackToTheCallingThreadBeforeJdk21() {
+        assumeTrue(Runtime.version().feature() < SynonymPoller.VIRTUAL_THREADS_JDK);
+
+        assertFalse(SynonymPoller.setVirtualThreads(true));
+
+        AtomicReference<Thread> ran = new AtomicReference<>();
+        SynonymPoller.execute(() -> ran.set(Thread.currentThread()), () -> {
+            throw new AssertionError("aborted");
+        });
+        assertEquals(Thread.currentThread(), ran.get());
+    }
+
+    @Test
+    public void testPollsOnVirtualThreadsFromJdk21() throws InterruptedException {
+        assumeTrue(Runtime.version().feature() >= SynonymPoller.VIRTUAL_THREADS_JDK);
+
+        assertTrue(SynonymPoller.setVirtualThreads(true));
+
+        AtomicReference<Thread> ran = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        SynonymPoller.execute(() -> {
+            ran.set(Thread.currentThread());
+            done.countDown();
+        }, done::countDown);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), ran.get());
+    }
+}
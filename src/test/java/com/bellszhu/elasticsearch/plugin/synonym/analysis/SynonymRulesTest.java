@@ -0,0 +1,73 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author bellszhu
+ */
+public class SynonymRulesTest {
+
+    @Test
+    public void testDuplicatesAreBlankedInPlace() {
+        String rules = String.join("\n",
+                "# comment",
+                "a, b",
+                "x => y",
+                "b ,  a",
+                "",
+                "x => y",
+                "c => d");
+        SynonymRules prepared = SynonymRules.prepare(rules, false);
+
+        assertEquals(String.join("\n",
+                "# comment",
+                "a, b",
+                "x => y",
+                "",
+                "",
+                "",
+                "c => d"), prepared.getText());
+        assertEquals(3, prepared.getRuleCount());
+        assertEquals(2, prepared.getDuplicateCount());
+        assertEquals(6, prepared.getTermCount());
+    }
+
+    @Test
+    public void testUniqueRulesAreKeptVerbatim() {
+        String rules = "x  =>  y\na,b\n";
+        SynonymRules prepared = SynonymRules.prepare(rules, false);
+
+        assertEquals(rules, prepared.getText());
+        assertEquals(2, prepared.getRuleCount());
+        assertEquals(0, prepared.getDuplicateCount());
+    }
+
+    @Test
+    public void testCollapseOnTheFirstLine() {
+        String rules = String.join("\n",
+                "a, b",
+                "x => y",
+                "b, c",
+                "d, e");
+        SynonymRules prepared = SynonymRules.prepare(rules, true);
+
+        assertEquals(String.join("\n",
+                "a, b, c",
+                "x => y",
+                "",
+                "d, e"), prepared.getText());
+        assertEquals(3, prepared.getRuleCount());
+    }
+
+    @Test
+    public void testEscapedArrowIsNotAMapping() {
+        assertEquals(-1, SynonymRules.indexOfMapping("a\\=>b, c"));
+        assertEquals(5, SynonymRules.indexOfMapping("a\\=b => c"));
+
+        SynonymRules prepared = SynonymRules.prepare("a\\=>b, c\nc, a\\=>b", false);
+        assertEquals("a\\=>b, c\n", prepared.getText());
+        assertEquals(1, prepared.getDuplicateCount());
+    }
+}
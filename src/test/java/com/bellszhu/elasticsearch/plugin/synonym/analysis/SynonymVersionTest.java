@@ -0,0 +1,40 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bellszhu
+ */
+public class SynonymVersionTest {
+
+    @Test
+    public void testVersionIncreasesOnEveryChange() {
+        assertEquals(0, SynonymVersion.NONE.getVersion());
+        assertNull(SynonymVersion.NONE.getHash());
+
+        long before = System.currentTimeMillis();
+        SynonymVersion first = SynonymVersion.NONE.next("a");
+        assertEquals(1, first.getVersion());
+        assertEquals("a", first.getHash());
+        assertTrue(first.getTimestamp() >= before);
+
+        // the same rules keep their version
+        assertSame(first, first.next("a"));
+
+        SynonymVersion second = first.next("b");
+        assertEquals(2, second.getVersion());
+        assertEquals("b", second.getHash());
+        // back to former rules is still a change
+        SynonymVersion third = second.next("a");
+        assertEquals(3, third.getVersion());
+        assertEquals("a", third.getHash());
+
+        assertEquals(0, SynonymVersion.NONE.getVersion());
+        assertEquals("version [3], hash [a]", third.toString());
+    }
+}
@@ -0,0 +1,67 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bellszhu
+ */
+public class SynonymWarmerTest {
+
+    @After
+    public void tearDown() {
+        SynonymWarmer.setThreads(2);
+    }
+
+    @Test
+    public void testHigherPriorityThenNewerIndicesFirst() throws InterruptedException {
+        SynonymWarmer.setThreads(1);
+
+        // hold the only thread so that the following builds are queued
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SynonymWarmer.submit("blocker", 0, 0, () -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(5);
+        submit(order, done, "old", 0, 1000);
+        submit(order, done, "new", 0, 2000);
+        submit(order, done, "priority", 10, 1000);
+        submit(order, done, "old, submitted later", 0, 1000);
+        SynonymWarmer.submit("failing", 5, 1000, () -> {
+            order.add("failing");
+            done.countDown();
+            throw new IllegalArgumentException("could not build synonyms");
+        });
+        assertEquals(5, SynonymWarmer.pending());
+
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // a failed build does not stop the others
+        assertEquals(List.of("priority", "failing", "new", "old", "old, submitted later"), order);
+    }
+
+    private static void submit(List<String> order, CountDownLatch done, String name, int priority, long creationDate) {
+        SynonymWarmer.submit(name, priority, creationDate, () -> {
+            order.add(name);
+            done.countDown();
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * @author bellszhu
+ */
+public class TenantMarkerFilterTest {
+
+    @Test
+    public void testMarkerSetsTheTenantOfTheFollowingTokens() throws IOException {
+        assertEquals(List.of("kfc/null/1", "big/acme/2", "mac/acme/1"), tokens("kfc __tenant_acme big mac"));
+    }
+
+    @Test
+    public void testMarkersAddTheirPositionToTheNextToken() throws IOException {
+        assertEquals(List.of("a/globex/3", "b/globex/1"), tokens("__tenant_acme __tenant_globex a b"));
+    }
+
+    @Test
+    public void testTenantIsResetWithTheStream() throws IOException {
+        WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+        TokenStream stream = new TenantMarkerFilter(tokenizer, "__tenant_");
+        tokenizer.setReader(new StringReader("__tenant_acme a"));
+        assertEquals(List.of("a/acme/2"), consume(stream));
+        tokenizer.setReader(new StringReader("b"));
+        assertEquals(List.of("b/null/1"), consume(stream));
+    }
+
+    @Test
+    public void testPrefixAloneIsNoMarker() throws IOException {
+        assertEquals(List.of("__tenant_/null/1", "a/null/1"), tokens("__tenant_ a"));
+    }
+
+    @Test
+    public void testAttributeEquality() {
+        TenantAttributeImpl acme = new TenantAttributeImpl();
+        acme.setTenant("acme");
+        TenantAttributeImpl other = new TenantAttributeImpl();
+        assertNotEquals(acme, other);
+        acme.copyTo(other);
+        assertEquals(acme, other);
+        assertEquals(acme.hashCode(), other.hashCode());
+        other.clear();
+        assertEquals(new TenantAttributeImpl(), other);
+    }
+
+    private static List<String> tokens(String text) throws IOException {
+        WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(new StringReader(text));
+        return consume(new TenantMarkerFilter(tokenizer, "__tenant_"));
+    }
+
+    /**
+     * @return term/tenant/position increment of each token.
+     */
+    private static List<String> consume(TokenStream stream) throws IOException {
+        CharTermAttribute termAtt = stream.getAttribute(CharTermAttribute.class);
+        TenantAttribute tenantAtt = stream.getAttribute(TenantAttribute.class);
+        PositionIncrementAttribute posIncAtt = stream.addAttribute(PositionIncrementAttribute.class);
+        List<String> tokens = new ArrayList<>();
+        stream.reset();
+        while (stream.incrementToken()) {
+            tokens.add(termAtt + "/" + tenantAtt.getTenant() + "/" + posIncAtt.getPositionIncrement());
+        }
+        stream.end();
+        stream.close();
+        return tokens;
+    }
+}
@@ -0,0 +1,90 @@
+package com.bellszhu.elasticsearch.plugin.synonym.analysis;
+
+import java.io.StringReader;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * @author bellszhu
+ */
+public class WeightedSynonymParserTest {
+
+    @Test
+    public void testStripWeights() {
+        Map<String, Float> weights = new LinkedHashMap<>();
+        assertEquals("laptop => notebook, ultrabook",
+                WeightedSynonymParser.stripWeights("laptop => notebook^0.6, ultrabook", weights));
+        assertEquals(Map.of("notebook", 0.6f), weights);
+
+        weights.clear();
+        assertEquals("tv, television", WeightedSynonymParser.stripWeights("tv,television^.9", weights));
+        assertEquals(Map.of("television", 0.9f), weights);
+    }
+
+    @Test
+    public void testEscapesAreNotWeights() {
+        Map<String, Float> weights = new HashMap<>();
+        assertNull(WeightedSynonymParser.stripWeights("a\\^2 => b", weights));
+        assertNull(WeightedSynonymParser.stripWeights("x^y, z", weights));
+        assertNull(WeightedSynonymParser.stripWeights("# c => d^2", weights));
+        assertEquals(Map.of(), weights);
+
+        // an escaped arrow or comma belongs to the term carrying the weight
+        assertEquals("a\\=>b, c", WeightedSynonymParser.stripWeights("a\\=>b^2, c", weights));
+        assertEquals(Map.of("a\\=>b", 2f), weights);
+        weights.clear();
+        assertEquals("x => y\\,z", WeightedSynonymParser.stripWeights("x => y\\,z^0.5", weights));
+        assertEquals(Map.of("y\\,z", 0.5f), weights);
+    }
+
+    @Test
+    public void testWeightsAreKeptInTheOutputs() throws Exception {
+        SynonymMap map = parse("laptop => notebook^0.6, ultrabook\nbig\\^2 => large^1.5\n");
+        Map<String, Float> outputs = new HashMap<>();
+        BytesRef bytes = new BytesRef();
+        CharsRefBuilder chars = new CharsRefBuilder();
+        for (int i = 0; i < map.words.size(); i++) {
+            map.words.get(i, bytes);
+            chars.copyUTF8Bytes(bytes);
+            CharsRef word = chars.get();
+            float weight = WeightedSynonymParser.stripWeight(word);
+            outputs.put(word.toString(), weight);
+        }
+        assertEquals(Map.of("notebook", 0.6f, "ultrabook", 1f, "large", 1.5f), outputs);
+    }
+
+    @Test
+    public void testStripWeightWithoutWeight() {
+        CharsRef word = new CharsRef("notebook");
+        assertEquals(1f, WeightedSynonymParser.stripWeight(word), 0f);
+        assertEquals("notebook", word.toString());
+    }
+
+    @Test
+    public void testInvalidWeightKeepsTheLineNumber() {
+        ParseException e = assertThrows(ParseException.class, () -> parse("a => b\n\nc => d^0\n"));
+        assertEquals("Invalid synonym rule at line 3", e.getMessage());
+    }
+
+    private static SynonymMap parse(String rules) throws Exception {
+        try (Analyzer analyzer = new WhitespaceAnalyzer()) {
+            WeightedSynonymParser parser = new WeightedSynonymParser(true, true, false, analyzer);
+            parser.parse(new StringReader(rules));
+            return parser.build();
+        }
+    }
+}